@@ -0,0 +1,67 @@
+package com.jpcd8544.bench;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jpcd8544.ImageConverter;
+
+/*
+	 Name		 : ConvertBenchmark.java
+
+	 Description :
+	     Frames per second of ImageConverter on a QVGA gray picture, the size
+	     of a cheap camera stream, for each dithering mode, with the pages
+	     converted in the calling thread or by fork/join tasks in the common pool.
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark {
+
+	@Param({ "0", "1", "2" })
+	public int mode;
+
+	private final byte gray[] = new byte[320 * 240];
+	private final byte frame[] = new byte[84 * 48 / 8];
+	private ImageConverter sequential;
+	private ImageConverter forked;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		new Random(42).nextBytes(gray);
+		sequential = new ImageConverter(84, 48, null);
+		sequential.setMode(mode);
+		forked = new ImageConverter(84, 48, ForkJoinPool.commonPool());
+		forked.setMode(mode);
+	}
+
+	@Benchmark
+	public byte[] inline() {
+		sequential.convertGray(gray, 320, 240, frame);
+		return frame;
+	}
+
+	@Benchmark
+	public byte[] forkJoin() {
+		forked.convertGray(gray, 320, 240, frame);
+		return frame;
+	}
+}
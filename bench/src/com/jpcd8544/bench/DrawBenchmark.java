@@ -0,0 +1,165 @@
+package com.jpcd8544.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jpcd8544.FrameBuffer;
+import com.jpcd8544.JPCD8544;
+import com.jpcd8544.Sprite;
+import com.jpcd8544.SpriteHandle;
+import com.jpcd8544.SpriteLayer;
+
+/*
+	 Name		 : DrawBenchmark.java
+
+	 Description :
+	     Throughput of the drawing primitives, into the frame buffer only. The
+	     LCD is set up on fake pins and never flushed here, see TransmitBenchmark.
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawBenchmark {
+
+	// a 16x16 icon, two pages of 16 columns
+	private static final int ICON[] = {
+		0xFF, 0x01, 0x01, 0x3D, 0x25, 0x25, 0x3D, 0x01, 0x01, 0x3D, 0x25, 0x25, 0x3D, 0x01, 0x01, 0xFF,
+		0xFF, 0x80, 0x80, 0xBC, 0xA4, 0xA4, 0xBC, 0x80, 0x80, 0xBC, 0xA4, 0xA4, 0xBC, 0x80, 0x80, 0xFF,
+	};
+
+	// the same icon as bytes, and a mask covering all of it
+	private static final byte ICON_BYTES[] = new byte[ICON.length];
+	private static final byte ICON_MASK[] = new byte[ICON.length];
+
+	static {
+		for (int k = 0; k < ICON.length; k++) {
+			ICON_BYTES[k] = (byte) ICON[k];
+			ICON_MASK[k] = (byte) 0xFF;
+		}
+	}
+
+	private JPCD8544 lcd;
+	private SpriteLayer sprites;
+	private SpriteHandle balls[] = new SpriteHandle[24];
+	private int i;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		FakePins pins = new FakePins();
+		lcd = new JPCD8544();
+		lcd.LCDInit(pins.newPin("DIN"), pins.newPin("SCLK"), pins.newPin("DC"),
+				null, pins.newPin("CS"), 50);
+
+		sprites = new SpriteLayer(lcd);
+		Sprite ball = new Sprite(ICON_BYTES, null, 16, 16);
+		for (int k = 0; k < balls.length; k++)
+			balls[k] = sprites.add(ball, (k * 13) % 70, (k * 7) % 34,
+					(k & 1) == 0 ? SpriteHandle.SAVE_UNDER : SpriteHandle.XOR);
+	}
+
+	// moves the shapes around, so aligned and unaligned positions both show up
+	private int next() {
+		return (i++) & 7;
+	}
+
+	@Benchmark
+	public void drawLine() {
+		int o = next();
+		lcd.LCDDrawLine(o, o, 83 - o, 47, lcd.BLACK);
+	}
+
+	@Benchmark
+	public void drawSteepLine() {
+		int o = next();
+		lcd.LCDDrawLine(o, 0, 20 + o, 47, lcd.BLACK);
+	}
+
+	@Benchmark
+	public void fillRect() {
+		int o = next();
+		lcd.LCDFillRect(o, o, 60, 30, (o & 1));
+	}
+
+	@Benchmark
+	public void fillScreen() {
+		lcd.LCDFillRect(0, 0, 84, 48, next() & 1);
+	}
+
+	@Benchmark
+	public void drawRect() {
+		int o = next();
+		lcd.LCDDrawRect(o, o, 60, 30, lcd.BLACK);
+	}
+
+	@Benchmark
+	public void drawCircle() {
+		lcd.LCDDrawCircle(41, 23 + next(), 20, lcd.BLACK);
+	}
+
+	@Benchmark
+	public void fillCircle() {
+		lcd.LCDFillCircle(41, 23 + next(), 20, lcd.BLACK);
+	}
+
+	@Benchmark
+	public void drawChar() {
+		int o = next();
+		lcd.LCDDrawChar(o * 6, o, (char) ('A' + o));
+	}
+
+	@Benchmark
+	public void drawString() {
+		lcd.LCDDrawString(0, next(), "Hello, PCD8544");
+	}
+
+	@Benchmark
+	public void drawBitmap() {
+		int o = next();
+		lcd.LCDDrawBitmap(o * 8, o, ICON, 16, 16, lcd.BLACK);
+	}
+
+	@Benchmark
+	public void scrollTicker() {
+		lcd.LCDScrollRegion(0, 8 * next() % 48, 84, 8, -1, 0, lcd.WHITE);
+	}
+
+	@Benchmark
+	public void scrollChart() {
+		lcd.LCDScrollRegion(0, 0, 84, 48, 0, 1 + next(), lcd.WHITE);
+	}
+
+	@Benchmark
+	public void moveSprites() {
+		int o = next();
+		for (int k = 0; k < balls.length; k++)
+			balls[k].moveTo((k * 13 + o) % 70, (k * 7 + o) % 34);
+		sprites.update();
+	}
+
+	@Benchmark
+	public void blitAligned() {
+		int o = next();
+		lcd.LCDBlit(o * 8, (o & 3) * 8, ICON_BYTES, null, 16, 16, FrameBuffer.ROP_COPY);
+	}
+
+	@Benchmark
+	public void blitMasked() {
+		int o = next();
+		lcd.LCDBlit(o * 8, o, ICON_BYTES, ICON_MASK, 16, 16, FrameBuffer.ROP_XOR);
+	}
+}
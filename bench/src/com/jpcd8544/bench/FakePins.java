@@ -0,0 +1,78 @@
+package com.jpcd8544.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : FakePins.java
+
+	 Description :
+	     In memory stand-ins for pi4j output pins, so the driver runs on any box
+	     without a Raspberry Pi. The pins are dynamic proxies: high() and low()
+	     update the pin level and count the calls and the real edges, every other
+	     method of the interface is a no-op.
+*/
+
+public class FakePins {
+
+	// every high()/low() call, and the ones that actually changed a level
+	private long writes;
+	private long toggles;
+
+	public GpioPinDigitalOutput newPin(final String name) {
+		return (GpioPinDigitalOutput) Proxy.newProxyInstance(
+				GpioPinDigitalOutput.class.getClassLoader(),
+				new Class<?>[] { GpioPinDigitalOutput.class },
+				new InvocationHandler() {
+					private boolean level;
+
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String m = method.getName();
+						if (m.equals("high") || m.equals("low")) {
+							boolean high = m.equals("high");
+							writes++;
+							if (high != level)
+								toggles++;
+							level = high;
+							return null;
+						}
+						if (m.equals("isHigh"))
+							return Boolean.valueOf(level);
+						if (m.equals("toString") || m.equals("getName"))
+							return name;
+						if (m.equals("hashCode"))
+							return Integer.valueOf(System.identityHashCode(proxy));
+						if (m.equals("equals"))
+							return Boolean.valueOf(proxy == args[0]);
+						return defaultValue(method.getReturnType());
+					}
+				});
+	}
+
+	public long getWrites() {
+		return writes;
+	}
+
+	public long getToggles() {
+		return toggles;
+	}
+
+	public void reset() {
+		writes = toggles = 0;
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) return Boolean.FALSE;
+		if (type == int.class) return Integer.valueOf(0);
+		if (type == long.class) return Long.valueOf(0);
+		if (type == double.class) return Double.valueOf(0);
+		if (type == float.class) return Float.valueOf(0);
+		if (type == short.class) return Short.valueOf((short) 0);
+		if (type == byte.class) return Byte.valueOf((byte) 0);
+		if (type == char.class) return Character.valueOf((char) 0);
+		return null;
+	}
+}
@@ -0,0 +1,136 @@
+package com.jpcd8544.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jpcd8544.BitBangTransport;
+import com.jpcd8544.JPCD8544;
+import com.jpcd8544.SpiDevTransport;
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : TransmitBenchmark.java
+
+	 Description :
+	     Throughput of the transmit path: full frames and single changed bytes
+	     bit-banged on fake pins, the same through the bulk spidev path into
+	     /dev/null, and the raw shiftOut of one byte.
+
+	     The pin counters are reported next to the ops/s as pinWrites and
+	     pinToggles, the totals of an iteration, with the frames sent in the
+	     same iteration: pinWrites / frames is the count per frame. The per
+	     frame figures are also printed at the end of each trial.
+*/
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransmitBenchmark {
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Pins {
+		public long frames;
+		public long pinWrites;
+		public long pinToggles;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			frames = pinWrites = pinToggles = 0;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class BitBang {
+		FakePins pins;
+		GpioPinDigitalOutput din, sclk;
+		JPCD8544 lcd;
+		long frames, lastWrites, lastToggles;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			pins = new FakePins();
+			din = pins.newPin("DIN");
+			sclk = pins.newPin("SCLK");
+			lcd = new JPCD8544();
+			lcd.LCDInit(din, sclk, pins.newPin("DC"), null, pins.newPin("CS"), 50);
+			lcd.LCDShowLogo();
+			pins.reset();
+		}
+
+		@TearDown(Level.Trial)
+		public void report() {
+			if (frames > 0) {
+				System.out.println();
+				System.out.println("pin writes per op: " + pins.getWrites() / frames
+						+ ", pin toggles per op: " + pins.getToggles() / frames);
+			}
+		}
+
+		void count(Pins counters) {
+			frames++;
+			counters.frames++;
+			counters.pinWrites += pins.getWrites() - lastWrites;
+			counters.pinToggles += pins.getToggles() - lastToggles;
+			lastWrites = pins.getWrites();
+			lastToggles = pins.getToggles();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Bulk {
+		JPCD8544 lcd;
+
+		// /dev/null stands in for /dev/spidev0.0, it swallows the writes without growing
+		@Setup(Level.Trial)
+		public void setUp() {
+			lcd = new JPCD8544();
+			lcd.LCDInit(new SpiDevTransport("/dev/null", null), null, 50);
+			lcd.LCDShowLogo();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			lcd.LCDClose();
+		}
+	}
+
+	@Benchmark
+	public void bitBangFullFrame(BitBang s, Pins counters) {
+		s.lcd.LCDDisplayAll();
+		s.count(counters);
+	}
+
+	@Benchmark
+	public void bitBangOneByte(BitBang s, Pins counters) {
+		s.lcd.LCDSetPixel((int) (s.frames % 84), 20, (int) (s.frames / 84) & 1);
+		s.lcd.LCDDisplay();
+		s.count(counters);
+	}
+
+	@Benchmark
+	public void bulkFullFrame(Bulk s) {
+		s.lcd.LCDDisplayAll();
+	}
+
+	@Benchmark
+	public void shiftOutByte(BitBang s, Pins counters) {
+		BitBangTransport.shiftOut(s.din, s.sclk, BitBangTransport.MSBFIRST, 0xA5);
+		s.count(counters);
+	}
+}
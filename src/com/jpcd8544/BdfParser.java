@@ -0,0 +1,148 @@
+package com.jpcd8544;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+	 Name		 : BdfParser.java
+
+	 Description :
+	     Reads a font in the Glyph Bitmap Distribution Format (BDF 2.1), the
+	     text format of the X11 bitmap fonts, and compiles it into an LCDFont.
+	     Each glyph is placed on the common baseline (FONT_ASCENT rows from the
+	     top) and turned from rows of bits into vertical page bytes.
+
+	     Only the glyphs with a code from 0 to 65535 are kept, the block width
+	     of a glyph is the larger of its advance (DWIDTH) and its ink.
+*/
+
+class BdfParser {
+
+	private static final int MAX_CODE = 0xFFFF;
+
+	// one parsed glyph, before it goes into the atlas
+	private static class Glyph {
+		int code = -1, advance;
+		int bbw, bbh, bbx, bby;
+		List<String> rows = new ArrayList<String>();
+	}
+
+	LCDFont parse(InputStream in) throws IOException {
+		BufferedReader r = new BufferedReader(new InputStreamReader(in, "US-ASCII"));
+		List<Glyph> glyphs = new ArrayList<Glyph>();
+		String name = "bdf";
+		int ascent = -1, descent = -1;
+		int fbbh = 0, fbby = 0;
+		int defaultChar = -1;
+		Glyph g = null;
+		boolean bitmap = false;
+		String line;
+
+		while ((line = r.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0)
+				continue;
+			String t[] = line.split("\\s+");
+			String k = t[0];
+
+			if (bitmap) {
+				if (k.equals("ENDCHAR")) {
+					bitmap = false;
+					if (g.code >= 0 && g.code <= MAX_CODE)
+						glyphs.add(g);
+					g = null;
+				} else {
+					g.rows.add(k);
+				}
+			} else if (k.equals("STARTFONT") && !line.startsWith("STARTFONT 2")) {
+				throw new IOException("Unsupported BDF version: " + line);
+			} else if (k.equals("FONT") && t.length > 1) {
+				name = line.substring(5).trim();
+			} else if (k.equals("FONTBOUNDINGBOX")) {
+				fbbh = Integer.parseInt(t[2]);
+				fbby = Integer.parseInt(t[4]);
+			} else if (k.equals("FONT_ASCENT")) {
+				ascent = Integer.parseInt(t[1]);
+			} else if (k.equals("FONT_DESCENT")) {
+				descent = Integer.parseInt(t[1]);
+			} else if (k.equals("DEFAULT_CHAR")) {
+				defaultChar = Integer.parseInt(t[1]);
+			} else if (k.equals("STARTCHAR")) {
+				g = new Glyph();
+			} else if (g != null && k.equals("ENCODING")) {
+				g.code = Integer.parseInt(t[t.length - 1]);
+			} else if (g != null && k.equals("DWIDTH")) {
+				g.advance = Integer.parseInt(t[1]);
+			} else if (g != null && k.equals("BBX")) {
+				g.bbw = Integer.parseInt(t[1]);
+				g.bbh = Integer.parseInt(t[2]);
+				g.bbx = Integer.parseInt(t[3]);
+				g.bby = Integer.parseInt(t[4]);
+			} else if (g != null && k.equals("BITMAP")) {
+				bitmap = true;
+			}
+		}
+		if (glyphs.isEmpty())
+			throw new IOException("No glyphs in the BDF font");
+
+		// without the properties, the font bounding box sets the baseline
+		if (ascent < 0)
+			ascent = fbbh + fbby;
+		if (descent < 0)
+			descent = -fbby;
+		int height = Math.max(1, ascent + descent);
+		int pages = (height + 7) / 8;
+
+		int maxCode = 0, size = 0;
+		for (Glyph x : glyphs) {
+			maxCode = Math.max(maxCode, x.code);
+			size += blockWidth(x) * pages;
+		}
+
+		byte atlas[] = new byte[size];
+		int offset[] = new int[maxCode + 1];
+		int width[] = new int[maxCode + 1];
+		int advance[] = new int[maxCode + 1];
+		for (int c = 0; c <= maxCode; c++)
+			offset[c] = -1;
+
+		int at = 0;
+		for (Glyph x : glyphs) {
+			int w = blockWidth(x);
+			offset[x.code] = at;
+			width[x.code] = w;
+			advance[x.code] = x.advance;
+
+			// row 0 of the bitmap is the top of the bounding box
+			int top = ascent - (x.bby + x.bbh);
+			for (int row = 0; row < x.rows.size() && row < x.bbh; row++) {
+				int y = top + row;
+				if (y < 0 || y >= height)
+					continue;
+				String hex = x.rows.get(row);
+				for (int col = 0; col < x.bbw; col++) {
+					int px = Math.max(0, x.bbx) + col;
+					int digit = col / 4;
+					if (digit >= hex.length() || px >= w)
+						break;
+					int nibble = Character.digit(hex.charAt(digit), 16);
+					if ((nibble & (8 >> (col & 3))) != 0)
+						atlas[at + (y >> 3) * w + px] |= (byte) (1 << (y & 7));
+				}
+			}
+			at += w * pages;
+		}
+
+		if (defaultChar < 0 || defaultChar > maxCode || offset[defaultChar] < 0)
+			defaultChar = ('?' <= maxCode && offset['?'] >= 0) ? '?' : -1;
+		return new LCDFont(name, height, atlas, offset, width, advance, defaultChar);
+	}
+
+	private static int blockWidth(Glyph g) {
+		return Math.max(1, Math.max(g.advance, Math.max(0, g.bbx) + g.bbw));
+	}
+}
@@ -0,0 +1,215 @@
+package com.jpcd8544;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : BitBangTransport.java
+
+	 Description :
+	     Software SPI on 3 GPIO pins (DIN, SCLK and D/C), driven through pi4j.
+	     Slow, but works on any pin. This is how the driver always talked to the
+	     LCD and it's still the default one.
+
+	     The pins are driven through a ToggleEncoder, so D/C, DIN and CS are only
+	     written when their level really changes.
+*/
+
+public class BitBangTransport implements LCDTransport {
+
+	private static final int HIGH = 1;
+	private static final int LOW = 0;
+
+	// keywords
+	public static final int LSBFIRST  =0;
+	public static final int MSBFIRST  =1;
+
+	// the clock of the static shiftOut, as fast as the LCD takes it
+	private static final LCDTiming DEFAULT_TIMING = new LCDTiming(LCDTiming.MAX_SCLK_HZ);
+
+	// writes only the pin transitions that are really needed
+	private final ToggleEncoder encoder;
+
+	private LCDMetrics metrics;
+	private long bytesSent;
+	private long writesCounted;
+	private int depth;
+
+	public BitBangTransport(GpioPinDigitalOutput dinPin,
+							GpioPinDigitalOutput sclkPin,
+							GpioPinDigitalOutput dcPin) {
+		this(dinPin, sclkPin, dcPin, null);
+	}
+
+	/**
+	 * Software SPI with a CS pin, asserted for the length of each transfer
+	 * session (a whole frame for LCDDisplay) and released afterwards
+	 *
+	 * @param dinPin
+	 * @param sclkPin
+	 * @param dcPin
+	 * @param csPin
+	 */
+	public BitBangTransport(GpioPinDigitalOutput dinPin,
+							GpioPinDigitalOutput sclkPin,
+							GpioPinDigitalOutput dcPin,
+							GpioPinDigitalOutput csPin) {
+		encoder = new ToggleEncoder(dinPin, sclkPin, dcPin, csPin, DEFAULT_TIMING);
+	}
+
+	/**
+	 * Sets the SCLK frequency, up to LCDTiming.MAX_SCLK_HZ (4MHz). Lower it for
+	 * long wires or a slow level shifter.
+	 *
+	 * @param hz
+	 */
+	public void setClockFrequency(long hz) {
+		encoder.setTiming(new LCDTiming(hz));
+	}
+
+	public long getClockFrequency() {
+		return encoder.getTiming().getClockFrequency();
+	}
+
+	/**
+	 * Counts the GPIO writes and the time spent in the clock delays
+	 *
+	 * @param m	null to stop counting
+	 */
+	public void setMetrics(LCDMetrics m) {
+		metrics = m;
+	}
+
+	/**
+	 * The pin writes done and saved so far
+	 */
+	public ToggleEncoder getEncoder() {
+		return encoder;
+	}
+
+	public void begin() {
+		if (depth++ == 0) {
+			encoder.sync();
+			encoder.select(true);
+		}
+	}
+
+	public void command(int c) {
+		begin();
+		encoder.mode(false);
+		send(c);
+		end();
+	}
+
+	public void data(int c) {
+		begin();
+		encoder.mode(true);
+		send(c);
+		end();
+	}
+
+	public void data(byte[] buf, int off, int len) {
+		begin();
+		encoder.mode(true);
+		for (int i = off; i < off + len; i++) {
+			send(buf[i] & 0xFF);
+		}
+		end();
+	}
+
+	private void send(int c) {
+		LCDMetrics m = metrics;
+		if (m != null && ++bytesSent % LCDMetrics.SPIN_SAMPLE == 0) {
+			m.spinNanos(encoder.send(c, true) * LCDMetrics.SPIN_SAMPLE);
+		} else {
+			encoder.send(c, false);
+		}
+	}
+
+	// a command is one more byte plus two D/C edges, about as cheap as a data byte
+	public int getRestartCost() {
+		return 1;
+	}
+
+	public void end() {
+		if (--depth > 0)
+			return;
+		encoder.select(false);
+
+		LCDMetrics m = metrics;
+		if (m != null) {
+			long writes = encoder.getWrites();
+			m.gpioWrites((int) (writes - writesCounted));
+			writesCounted = writes;
+		}
+	}
+
+	public void close() {
+		// the pins belong to the caller
+	}
+
+	// bitbang serial shift out on select GPIO pin. Data rate is at most 4MHz (LCD Max CLK input),
+	// the clock high time is timed by LCDTiming. The encoders forget their pin levels.
+	public static void shiftOut(GpioPinDigitalOutput dataPin, GpioPinDigitalOutput clockPin, int bitOrder, long val)	{
+		ToggleEncoder.pinsTouched();
+		clockOut(dataPin, clockPin, bitOrder, val, DEFAULT_TIMING, false);
+	}
+
+	// shiftOut, returns the nanoseconds spent in the clock delays if timeSpins is set
+	private static long clockOut(GpioPinDigitalOutput dataPin, GpioPinDigitalOutput clockPin, int bitOrder, long val,
+			LCDTiming timing, boolean timeSpins)	{
+
+		//	C version - doesn't work in Java because the !)@*#(@! bitwise NOT operator
+		// 		In java we have the complement ~ operator, but it's not bitwise NOT
+		//		Don't you agree? Try to compile this code with C with a random number. Put the same number
+		//		in Java. View the results.
+		//
+		//		long i, j;
+		//
+		//		for (i = 0; i < 8; i++)  {
+		//			if (bitOrder == LSBFIRST)
+		//				digitalWrite(dataPin, ~(val & (1 << i)));
+		//			else
+		//				digitalWrite(dataPin, ~(val & (1 << (7-i))));
+		//
+		//			digitalWrite(clockPin, HIGH);
+		//			for (j = CLKCONST_2; j > 0; j--); // clock speed, anyone? (LCD Max CLK input: 4MHz)
+		//			digitalWrite(clockPin, LOW);
+		//		}
+		long t, spin = 0;
+		int i;
+
+		for (i = 0; i < 8; i++)  {
+			if (bitOrder == LSBFIRST)
+				write(dataPin, (val >> i) & 1);
+			else
+				write(dataPin, (val >> (7-i)) & 1);
+
+			write(clockPin, HIGH);
+			t = timeSpins ? System.nanoTime() : 0;
+			timing.halfPeriod(); // clock speed, anyone? (LCD Max CLK input: 4MHz)
+			if (timeSpins)
+				spin += System.nanoTime() - t;
+			write(clockPin, LOW);
+		}
+		return spin;
+	}
+
+	/**
+	 * A pi4j port of arduino digitalWrite. The encoders forget their pin levels.
+	 *
+	 * @param pin
+	 * @param state
+	 */
+	public static void digitalWrite(GpioPinDigitalOutput pin, long state) {
+		ToggleEncoder.pinsTouched();
+		write(pin, state);
+	}
+
+	private static void write(GpioPinDigitalOutput pin, long state) {
+		if (state == HIGH){
+			pin.high();
+		}else {
+			pin.low();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.jpcd8544;
+
+import java.util.concurrent.locks.Lock;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : ChipSelectTransport.java
+
+	 Description :
+	     One LCD on a bus shared with other LCDs. DIN, SCLK and D/C are common,
+	     each LCD has its own CS line. The LCD is selected (CS low) for the
+	     length of a transfer session, and the bus lock keeps the other LCDs off
+	     the wire meanwhile.
+*/
+
+public class ChipSelectTransport implements LCDTransport {
+
+	private final LCDTransport bus;
+	private final GpioPinDigitalOutput _cs;
+	private final Lock busLock;
+	private int depth;
+
+	/**
+	 * @param bus		the shared DIN/SCLK/D/C transport
+	 * @param csPin		this LCD chip select
+	 * @param busLock	the lock shared by every LCD on the bus
+	 */
+	public ChipSelectTransport(LCDTransport bus, GpioPinDigitalOutput csPin, Lock busLock) {
+		this.bus = bus;
+		this._cs = csPin;
+		this.busLock = busLock;
+
+		// not listening until selected
+		_cs.high();
+	}
+
+	public void begin() {
+		busLock.lock();
+		if (depth++ == 0) {
+			_cs.low();
+			bus.begin();
+		}
+	}
+
+	public void command(int c) {
+		begin();
+		try {
+			bus.command(c);
+		} finally {
+			end();
+		}
+	}
+
+	public void data(int c) {
+		begin();
+		try {
+			bus.data(c);
+		} finally {
+			end();
+		}
+	}
+
+	public void data(byte[] buf, int off, int len) {
+		begin();
+		try {
+			bus.data(buf, off, len);
+		} finally {
+			end();
+		}
+	}
+
+	public int getRestartCost() {
+		return bus.getRestartCost();
+	}
+
+	// the pending bytes must be out before CS goes back high
+	public void end() {
+		try {
+			if (--depth == 0) {
+				try {
+					bus.end();
+				} finally {
+					_cs.high();
+				}
+			}
+		} finally {
+			busLock.unlock();
+		}
+	}
+
+	public void close() {
+		// the bus belongs to the PanelManager
+	}
+}
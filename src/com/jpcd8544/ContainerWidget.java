@@ -0,0 +1,101 @@
+package com.jpcd8544;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+	 Name		 : ContainerWidget.java
+
+	 Description :
+	     Groups widgets, e.g. a whole screen or a panel of fields. Rendering a
+	     container renders its dirty children only. The container itself is
+	     repainted, children included, when it's invalidated or a child is
+	     removed, since the child leaves a hole behind.
+
+	     The children should not overlap, a repainted child clears its whole
+	     rectangle.
+*/
+
+public class ContainerWidget extends Widget {
+
+	private final List<Widget> children = new ArrayList<Widget>();
+	private boolean childDirty;
+	private boolean border;
+
+	public ContainerWidget(int x, int y, int width, int height) {
+		super(x, y, width, height);
+	}
+
+	/**
+	 * Adds a child, painted over the ones added before it. Its coordinates are
+	 * screen coordinates.
+	 *
+	 * @param w
+	 */
+	public void add(Widget w) {
+		if (w.getParent() != null)
+			w.getParent().remove(w);
+		children.add(w);
+		w.setParent(this);
+		w.invalidate();
+	}
+
+	public void remove(Widget w) {
+		if (children.remove(w)) {
+			w.setParent(null);
+			invalidate();
+		}
+	}
+
+	public List<Widget> getChildren() {
+		return children;
+	}
+
+	/**
+	 * Draws a one pixel frame around the container
+	 *
+	 * @param on
+	 */
+	public void setBorder(boolean on) {
+		if (border != on) {
+			border = on;
+			invalidate();
+		}
+	}
+
+	void childInvalidated() {
+		if (!childDirty) {
+			childDirty = true;
+			if (getParent() != null)
+				getParent().childInvalidated();
+		}
+	}
+
+	public boolean isDirty() {
+		return super.isDirty() || childDirty;
+	}
+
+	public boolean render(JPCD8544 lcd) {
+		boolean painted = false;
+		if (super.isDirty()) {
+			// everything goes, so every child has to be painted again
+			for (Widget w : children)
+				w.invalidate();
+			painted = super.render(lcd);
+		} else if (!childDirty) {
+			return false;
+		}
+		childDirty = false;
+
+		for (Widget w : children) {
+			if (w.render(lcd))
+				painted = true;
+		}
+		return painted;
+	}
+
+	protected void paint(JPCD8544 lcd) {
+		if (border)
+			lcd.LCDDrawRect(x, y, width, height, lcd.BLACK);
+	}
+}
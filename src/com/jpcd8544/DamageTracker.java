@@ -0,0 +1,151 @@
+package com.jpcd8544;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+	 Name		 : DamageTracker.java
+
+	 Description :
+	     Keeps track of which parts of the PCD8544 display RAM are out of date.
+	     The controller memory is organized in 6 pages (banks) of 8 rows, each one
+	     84 columns wide, so the damage is recorded as one column range per page.
+	     LCDDisplay only needs to send the dirty columns of the dirty pages.
+
+	     There is no lock: the ranges are atomic, mark() widens them with
+	     compare-and-set, so drawing threads on different pages never wait for
+	     each other here. A page range is only set back (clearPage, movePage) by
+	     the flush, under the page lock of the memory buffer, and the drawing
+	     threads mark their damage under the same lock.
+*/
+
+public class DamageTracker {
+
+	private final int width;
+	private final int pages;
+
+	// per page dirty column range, colMin > colMax means the page is clean
+	private final AtomicIntegerArray colMin;
+	private final AtomicIntegerArray colMax;
+
+	public DamageTracker(int width, int height) {
+		this.width = width;
+		this.pages = height / 8;
+		this.colMin = new AtomicIntegerArray(pages);
+		this.colMax = new AtomicIntegerArray(pages);
+		clear();
+	}
+
+	/**
+	 * Marks the rectangle (xmin, ymin) - (xmax, ymax) as dirty. The corners are
+	 * inclusive, may come in any order and are clipped to the screen.
+	 *
+	 * @param xmin
+	 * @param ymin
+	 * @param xmax
+	 * @param ymax
+	 */
+	public void mark(int xmin, int ymin, int xmax, int ymax) {
+		int t;
+		if (xmin > xmax) {
+			t = xmin; xmin = xmax; xmax = t;
+		}
+		if (ymin > ymax) {
+			t = ymin; ymin = ymax; ymax = t;
+		}
+
+		if (xmax < 0 || ymax < 0 || xmin >= width || ymin >= pages * 8)
+			return;
+		if (xmin < 0) xmin = 0;
+		if (ymin < 0) ymin = 0;
+		if (xmax >= width) xmax = width - 1;
+		if (ymax >= pages * 8) ymax = pages * 8 - 1;
+
+		for (int p = ymin / 8; p <= ymax / 8; p++) {
+			widen(p, xmin, xmax);
+		}
+	}
+
+	// grows the range of page p to cover xmin..xmax
+	private void widen(int p, int xmin, int xmax) {
+		int v;
+		while (xmin < (v = colMin.get(p)) && !colMin.compareAndSet(p, v, xmin))
+			;
+		while (xmax > (v = colMax.get(p)) && !colMax.compareAndSet(p, v, xmax))
+			;
+	}
+
+	/**
+	 * Marks the whole screen as dirty, forcing the next refresh to send everything
+	 */
+	public void markAll() {
+		for (int p = 0; p < pages; p++) {
+			colMin.set(p, 0);
+			colMax.set(p, width - 1);
+		}
+	}
+
+	/**
+	 * Merges the damage recorded by other into this tracker
+	 *
+	 * @param other
+	 */
+	public void merge(DamageTracker other) {
+		for (int p = 0; p < pages; p++) {
+			int min = other.colMin.get(p);
+			int max = other.colMax.get(p);
+			if (min <= max)
+				widen(p, min, max);
+		}
+	}
+
+	/**
+	 * Moves the damage of one page to dst, leaving the page clean here. Hold
+	 * the lock of the page, so no damage is marked in between.
+	 *
+	 * @param page
+	 * @param dst
+	 */
+	public void movePage(int page, DamageTracker dst) {
+		int min = colMin.get(page);
+		int max = colMax.get(page);
+		if (min <= max) {
+			dst.widen(page, min, max);
+			clearPage(page);
+		}
+	}
+
+	public boolean isDirty() {
+		for (int p = 0; p < pages; p++) {
+			if (isPageDirty(p))
+				return true;
+		}
+		return false;
+	}
+
+	public boolean isPageDirty(int page) {
+		return colMin.get(page) <= colMax.get(page);
+	}
+
+	public int getColumnMin(int page) {
+		return colMin.get(page);
+	}
+
+	public int getColumnMax(int page) {
+		return colMax.get(page);
+	}
+
+	public int getPages() {
+		return pages;
+	}
+
+	public void clearPage(int page) {
+		colMin.set(page, width);
+		colMax.set(page, -1);
+	}
+
+	public void clear() {
+		for (int p = 0; p < pages; p++) {
+			clearPage(p);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : DisplaySink.java
+
+	 Description :
+	     A FrameSink that shows the frames on a PCD8544, e.g. the output of an
+	     ImageStreamConverter. Each frame replaces the memory buffer through
+	     LCDDrawFrame, so only the columns that changed are sent. With a
+	     RenderScheduler the refresh is left to its frame clock, otherwise
+	     LCDDisplay is called for every frame.
+*/
+
+public class DisplaySink implements FrameSink {
+
+	private final JPCD8544 lcd;
+	private final RenderScheduler scheduler;
+
+	public DisplaySink(JPCD8544 lcd) {
+		this(lcd, null);
+	}
+
+	/**
+	 * @param lcd
+	 * @param scheduler	refreshes the LCD, or null to call LCDDisplay directly
+	 */
+	public DisplaySink(JPCD8544 lcd, RenderScheduler scheduler) {
+		this.lcd = lcd;
+		this.scheduler = scheduler;
+	}
+
+	public void write(byte[] frame, int width, int height, long sequence) {
+		lcd.LCDDrawFrame(frame);
+		if (scheduler != null)
+			scheduler.requestDisplay();
+		else
+			lcd.LCDDisplay();
+	}
+
+	public void close() {
+	}
+}
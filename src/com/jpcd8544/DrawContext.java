@@ -0,0 +1,20 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : DrawContext.java
+
+	 Description :
+	     The text cursor and text attributes of one thread. Each thread drawing
+	     on an LCD gets its own, so LCDDrawString from two threads don't move
+	     each other's cursor or change each other's text color.
+*/
+
+class DrawContext {
+
+	int cursorX, cursorY;
+	int textSize = 1;
+	int textColor = 1;	// BLACK
+
+	// LCDDrawBitmap(int[]) converts the bitmap in here
+	byte bitmapScratch[] = new byte[0];
+}
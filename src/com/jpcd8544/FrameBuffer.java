@@ -0,0 +1,747 @@
+package com.jpcd8544;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+	 Name		 : FrameBuffer.java
+
+	 Description :
+	     The memory buffer for the LCD, packed like the PCD8544 display RAM: one
+	     byte per column of each 8 rows page, bit 0 on top. For a 84x48 display
+	     that's 504 bytes, exactly 63 longs.
+
+	     The bulk operations (clear, fill, invert, copy, OR/AND/XOR composite and
+	     equality) work on 64 bits at a time through a long view of the bytes.
+	     Only a size that is not a multiple of 8 leaves a few bytes for the tail
+	     loops.
+
+	     Filled shapes are rasterized as spans. A vertical span touches at most
+	     two partial bytes (top/bottom masks) plus whole 0xFF/0x00 bytes, and a
+	     horizontal span ORs (or ANDs) one mask across a run of columns. Lines
+	     and outlines are built from spans where they can, the other lines walk
+	     the byte index and bit mask directly.
+
+	     scroll() moves a region in place: column bytes for a horizontal move,
+	     64 bit column words for a vertical one.
+
+	     Bitmaps in the same page layout are drawn with blit(), one byte per
+	     column and page, shifted when they don't start on a page boundary.
+*/
+
+public class FrameBuffer {
+
+	private final int width;
+	private final int height;
+	private final byte bytes[];
+
+	// the same memory as bytes, read and written 8 bytes at a time
+	private final ByteBuffer words;
+	private final int wordCount;
+
+	// TOP_MASK[n]: rows n..7 of a page, BOTTOM_MASK[n]: rows 0..n of a page
+	static final int TOP_MASK[] = { 0xFF, 0xFE, 0xFC, 0xF8, 0xF0, 0xE0, 0xC0, 0x80 };
+	static final int BOTTOM_MASK[] = { 0x01, 0x03, 0x07, 0x0F, 0x1F, 0x3F, 0x7F, 0xFF };
+
+	// raster ops of blit: how a bitmap pixel combines with the buffer pixel
+	public static final int ROP_COPY = 0;	// the bitmap replaces the buffer
+	public static final int ROP_OR = 1;		// black bitmap pixels are set
+	public static final int ROP_AND = 2;	// white bitmap pixels are cleared
+	public static final int ROP_XOR = 3;	// black bitmap pixels are flipped
+	public static final int ROP_CLEAR = 4;	// black bitmap pixels are cleared
+
+	public FrameBuffer(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.bytes = new byte[width * height / 8];
+		this.words = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+		this.wordCount = bytes.length / 8;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * The packed bytes, index = x + (y/8)*width. Changes made through the array
+	 * are seen by the bulk operations and vice versa.
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public int size() {
+		return bytes.length;
+	}
+
+	public void clear() {
+		fill(0x00);
+	}
+
+	/**
+	 * Sets every byte of the buffer to pattern, e.g. 0xFF for all black or 0x55
+	 * for horizontal stripes
+	 *
+	 * @param pattern
+	 */
+	public void fill(int pattern) {
+		long w = (pattern & 0xFFL) * 0x0101010101010101L;
+		int i;
+		for (i = 0; i < wordCount; i++)
+			words.putLong(i << 3, w);
+		for (i = wordCount << 3; i < bytes.length; i++)
+			bytes[i] = (byte) pattern;
+	}
+
+	public void invert() {
+		int i;
+		for (i = 0; i < wordCount; i++)
+			words.putLong(i << 3, ~words.getLong(i << 3));
+		for (i = wordCount << 3; i < bytes.length; i++)
+			bytes[i] = (byte) ~bytes[i];
+	}
+
+	public void copyFrom(FrameBuffer src) {
+		checkSize(src);
+		int i;
+		for (i = 0; i < wordCount; i++)
+			words.putLong(i << 3, src.words.getLong(i << 3));
+		for (i = wordCount << 3; i < bytes.length; i++)
+			bytes[i] = src.bytes[i];
+	}
+
+	/**
+	 * Copies an old style int[] bitmap (one 8 bit value per element) into the buffer
+	 *
+	 * @param src
+	 */
+	public void copyFrom(int[] src) {
+		int n = Math.min(src.length, bytes.length);
+		for (int i = 0; i < n; i++)
+			bytes[i] = (byte) src[i];
+	}
+
+	/**
+	 * this = this | src, sets every pixel that is black in src
+	 *
+	 * @param src
+	 */
+	public void or(FrameBuffer src) {
+		checkSize(src);
+		int i;
+		for (i = 0; i < wordCount; i++)
+			words.putLong(i << 3, words.getLong(i << 3) | src.words.getLong(i << 3));
+		for (i = wordCount << 3; i < bytes.length; i++)
+			bytes[i] |= src.bytes[i];
+	}
+
+	/**
+	 * this = this & src, keeps only the pixels that are black in src
+	 *
+	 * @param src
+	 */
+	public void and(FrameBuffer src) {
+		checkSize(src);
+		int i;
+		for (i = 0; i < wordCount; i++)
+			words.putLong(i << 3, words.getLong(i << 3) & src.words.getLong(i << 3));
+		for (i = wordCount << 3; i < bytes.length; i++)
+			bytes[i] &= src.bytes[i];
+	}
+
+	/**
+	 * this = this & ~src, clears every pixel that is black in src
+	 *
+	 * @param src
+	 */
+	public void andNot(FrameBuffer src) {
+		checkSize(src);
+		int i;
+		for (i = 0; i < wordCount; i++)
+			words.putLong(i << 3, words.getLong(i << 3) & ~src.words.getLong(i << 3));
+		for (i = wordCount << 3; i < bytes.length; i++)
+			bytes[i] &= ~src.bytes[i];
+	}
+
+	/**
+	 * this = this ^ src, flips every pixel that is black in src
+	 *
+	 * @param src
+	 */
+	public void xor(FrameBuffer src) {
+		checkSize(src);
+		int i;
+		for (i = 0; i < wordCount; i++)
+			words.putLong(i << 3, words.getLong(i << 3) ^ src.words.getLong(i << 3));
+		for (i = wordCount << 3; i < bytes.length; i++)
+			bytes[i] ^= src.bytes[i];
+	}
+
+	/**
+	 * True if both buffers hold the same picture
+	 *
+	 * @param other
+	 */
+	public boolean contentEquals(FrameBuffer other) {
+		checkSize(other);
+		int i;
+		for (i = 0; i < wordCount; i++) {
+			if (words.getLong(i << 3) != other.words.getLong(i << 3))
+				return false;
+		}
+		for (i = wordCount << 3; i < bytes.length; i++) {
+			if (bytes[i] != other.bytes[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Fills rows y0..y1 (inclusive) of column x. color 0 is white, anything else black.
+	 *
+	 * @param x
+	 * @param y0
+	 * @param y1
+	 * @param color
+	 */
+	public void fillVSpan(int x, int y0, int y1, int color) {
+		int t;
+		if (y0 > y1) {
+			t = y0; y0 = y1; y1 = t;
+		}
+		if (x < 0 || x >= width || y1 < 0 || y0 >= height)
+			return;
+		if (y0 < 0) y0 = 0;
+		if (y1 >= height) y1 = height - 1;
+
+		int p0 = y0 >> 3;
+		int p1 = y1 >> 3;
+		int i = x + p0 * width;
+
+		if (p0 == p1) {
+			fillMask(i, TOP_MASK[y0 & 7] & BOTTOM_MASK[y1 & 7], color);
+			return;
+		}
+
+		fillMask(i, TOP_MASK[y0 & 7], color);
+		byte full = (byte) (color != 0 ? 0xFF : 0x00);
+		for (i += width; i < x + p1 * width; i += width)
+			bytes[i] = full;
+		fillMask(i, BOTTOM_MASK[y1 & 7], color);
+	}
+
+	/**
+	 * Fills columns x0..x1 (inclusive) of row y. color 0 is white, anything else black.
+	 *
+	 * @param x0
+	 * @param x1
+	 * @param y
+	 * @param color
+	 */
+	public void fillHSpan(int x0, int x1, int y, int color) {
+		fillRect(x0, y, x1 - x0 + 1, 1, color);
+	}
+
+	/**
+	 * Draws a line from (x0, y0) to (x1, y1), both ends included. color 0 is
+	 * white, anything else black.
+	 *
+	 * Horizontal and vertical lines are spans. Any other line is clipped to
+	 * the buffer once, by working out the first and last steps inside, then
+	 * walked with Bresenham on the byte index and bit mask directly. The
+	 * clipped line lights exactly the on screen pixels of the whole line.
+	 *
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param color
+	 */
+	public void drawLine(int x0, int y0, int x1, int y1, int color) {
+		if (y0 == y1) {
+			fillHSpan(Math.min(x0, x1), Math.max(x0, x1), y0, color);
+			return;
+		}
+		if (x0 == x1) {
+			fillVSpan(x0, y0, y1, color);
+			return;
+		}
+
+		// walk along the major axis u, from the lower end, the minor axis v moves by vstep
+		boolean steep = Math.abs(y1 - y0) > Math.abs(x1 - x0);
+		int t;
+		if (steep) {
+			t = x0; x0 = y0; y0 = t;
+			t = x1; x1 = y1; y1 = t;
+		}
+		if (x0 > x1) {
+			t = x0; x0 = x1; x1 = t;
+			t = y0; y0 = y1; y1 = t;
+		}
+		int du = x1 - x0;
+		int dv = Math.abs(y1 - y0);
+		int vstep = (y0 < y1) ? 1 : -1;
+		int uMax = (steep ? height : width) - 1;
+		int vMax = (steep ? width : height) - 1;
+
+		// step i lights (u0 + i, v0 + vstep*k(i)), k(i) = ceil((i*dv - e0) / du) and
+		// at least 0, like the classic loop with err starting at e0 = du/2
+		int e0 = du / 2;
+		int i0 = Math.max(0, -x0);
+		int i1 = Math.min(du, uMax - x0);
+
+		// the range of k that keeps v on screen, turned into a range of steps
+		int kLo = (vstep > 0) ? -y0 : y0 - vMax;
+		int kHi = (vstep > 0) ? vMax - y0 : y0;
+		if (kHi < 0 || kLo > dv)
+			return;
+		if (kLo > 0)
+			i0 = Math.max(i0, ((kLo - 1) * du + e0) / dv + 1);
+		if (kHi < dv)
+			i1 = Math.min(i1, (kHi * du + e0) / dv);
+		if (i0 > i1)
+			return;
+
+		int k = (i0 * dv - e0 + du - 1) / du;
+		int err = e0 - i0 * dv + k * du;
+		int x = x0 + i0;
+		int y = y0 + vstep * k;
+		if (steep) {
+			t = x; x = y; y = t;
+		}
+		int index = x + (y >> 3) * width;
+		int mask = 1 << (y & 7);
+
+		for (int i = i0; i <= i1; i++) {
+			if (color != 0)
+				bytes[index] |= mask;
+			else
+				bytes[index] &= ~mask;
+
+			err -= dv;
+			boolean minor = err < 0;
+			if (minor)
+				err += du;
+
+			if (steep) {
+				// u is y, always one row down
+				mask <<= 1;
+				if (mask == 0x100) {
+					mask = 1;
+					index += width;
+				}
+				if (minor)
+					index += vstep;
+			} else {
+				index++;
+				if (minor) {
+					if (vstep > 0) {
+						mask <<= 1;
+						if (mask == 0x100) {
+							mask = 1;
+							index += width;
+						}
+					} else {
+						mask >>= 1;
+						if (mask == 0) {
+							mask = 0x80;
+							index -= width;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draws the outline of the w x h rectangle at (x, y): two horizontal and
+	 * two vertical spans
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param color
+	 */
+	public void drawRect(int x, int y, int w, int h, int color) {
+		if (w <= 0 || h <= 0)
+			return;
+		fillRect(x, y, w, 1, color);
+		fillRect(x, y + h - 1, w, 1, color);
+		fillVSpan(x, y, y + h - 1, color);
+		fillVSpan(x + w - 1, y, y + h - 1, color);
+	}
+
+	/**
+	 * Draws the outline of the circle of radius r centered on (x0, y0)
+	 *
+	 * @param x0
+	 * @param y0
+	 * @param r
+	 * @param color
+	 */
+	public void drawCircle(int x0, int y0, int r, int color) {
+		if (x0 + r < 0 || y0 + r < 0 || x0 - r >= width || y0 - r >= height)
+			return;
+		int f = 1 - r;
+		int ddF_x = 1;
+		int ddF_y = -2 * r;
+		int x = 0;
+		int y = r;
+
+		plot(x0, y0 + r, color);
+		plot(x0, y0 - r, color);
+		plot(x0 + r, y0, color);
+		plot(x0 - r, y0, color);
+
+		while (x < y) {
+			if (f >= 0) {
+				y--;
+				ddF_y += 2;
+				f += ddF_y;
+			}
+			x++;
+			ddF_x += 2;
+			f += ddF_x;
+
+			plot(x0 + x, y0 + y, color);
+			plot(x0 - x, y0 + y, color);
+			plot(x0 + x, y0 - y, color);
+			plot(x0 - x, y0 - y, color);
+			plot(x0 + y, y0 + x, color);
+			plot(x0 - y, y0 + x, color);
+			plot(x0 + y, y0 - x, color);
+			plot(x0 - y, y0 - x, color);
+		}
+	}
+
+	// one pixel, dropped if off the buffer
+	private void plot(int x, int y, int color) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return;
+		if (color != 0)
+			bytes[x + (y >> 3) * width] |= 1 << (y & 7);
+		else
+			bytes[x + (y >> 3) * width] &= ~(1 << (y & 7));
+	}
+
+	/**
+	 * Fills the w x h rectangle at (x, y), clipped to the buffer. color 0 is white,
+	 * anything else black.
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param color
+	 */
+	public void fillRect(int x, int y, int w, int h, int color) {
+		if (w < 0) {
+			x += w + 1;
+			w = -w;
+		}
+		if (h < 0) {
+			y += h + 1;
+			h = -h;
+		}
+		int x0 = Math.max(x, 0);
+		int x1 = Math.min(x + w - 1, width - 1);
+		int y0 = Math.max(y, 0);
+		int y1 = Math.min(y + h - 1, height - 1);
+		if (x0 > x1 || y0 > y1)
+			return;
+
+		int p0 = y0 >> 3;
+		int p1 = y1 >> 3;
+		for (int p = p0; p <= p1; p++) {
+			int mask = 0xFF;
+			if (p == p0) mask &= TOP_MASK[y0 & 7];
+			if (p == p1) mask &= BOTTOM_MASK[y1 & 7];
+			fillColumns(p * width + x0, p * width + x1, mask, color);
+		}
+	}
+
+	// sets or clears the mask bits of bytes[from..to]
+	private void fillColumns(int from, int to, int mask, int color) {
+		int i;
+		if (mask == 0xFF) {
+			byte full = (byte) (color != 0 ? 0xFF : 0x00);
+			for (i = from; i <= to; i++)
+				bytes[i] = full;
+		} else if (color != 0) {
+			for (i = from; i <= to; i++)
+				bytes[i] |= mask;
+		} else {
+			for (i = from; i <= to; i++)
+				bytes[i] &= ~mask;
+		}
+	}
+
+	private void fillMask(int i, int mask, int color) {
+		if (color != 0)
+			bytes[i] |= mask;
+		else
+			bytes[i] &= ~mask;
+	}
+
+	/**
+	 * Copies a page packed picture of w columns by pages*8 rows to (x, y),
+	 * clipped to the buffer. Every pixel of the picture is written, white ones
+	 * included. When y is a multiple of 8 each page is a straight array copy,
+	 * otherwise each column takes two shifted, masked writes.
+	 *
+	 * @param x
+	 * @param y
+	 * @param src		page by page, w bytes per page
+	 * @param srcOff	where the picture starts in src
+	 * @param w
+	 * @param pages
+	 */
+	public void copyColumns(int x, int y, byte[] src, int srcOff, int w, int pages) {
+		blit(x, y, src, srcOff, w, pages * 8, ROP_COPY, null, 0);
+	}
+
+	/**
+	 * Combines a page packed bitmap of w x h pixels with the buffer at (x, y),
+	 * clipped to the buffer. The bitmap is laid out like the buffer itself,
+	 * ceil(h/8) pages of w bytes, bit 0 on top, and so is the mask.
+	 *
+	 * Only the pixels set in the mask are touched, the others are transparent.
+	 * Without a mask the whole w x h rectangle is. When y is a multiple of 8
+	 * a page of the bitmap lands on one page of the buffer (a straight array
+	 * copy for ROP_COPY), otherwise each column is split in two shifted writes.
+	 *
+	 * @param x
+	 * @param y
+	 * @param src		the bitmap
+	 * @param srcOff	where the bitmap starts in src
+	 * @param w
+	 * @param h
+	 * @param rop		ROP_COPY, ROP_OR, ROP_AND, ROP_XOR or ROP_CLEAR
+	 * @param mask		the pixels to touch, may be null
+	 * @param maskOff	where the mask starts in mask
+	 */
+	public void blit(int x, int y, byte[] src, int srcOff, int w, int h, int rop, byte[] mask, int maskOff) {
+		int c0 = Math.max(0, -x);
+		int c1 = Math.min(w, width - x);
+		if (c0 >= c1 || h <= 0 || y >= height || y + h <= 0)
+			return;
+
+		int n = c1 - c0;
+		int shift = y & 7;
+		int page = y >> 3;	// arithmetic shift, so negative y gives negative pages
+		int bufferPages = height >> 3;
+		int pages = (h + 7) >> 3;
+
+		for (int p = 0; p < pages; p++) {
+			int s = srcOff + p * w + c0;
+			int m = maskOff + p * w + c0;
+			int top = page + p;
+			// the last page of the bitmap may be partly used
+			int rows = p == pages - 1 ? BOTTOM_MASK[(h - 1) & 7] : 0xFF;
+			int d, i;
+
+			if (shift == 0) {
+				if (top < 0 || top >= bufferPages)
+					continue;
+				d = top * width + x + c0;
+				if (rop == ROP_COPY && mask == null && rows == 0xFF) {
+					System.arraycopy(src, s, bytes, d, n);
+					continue;
+				}
+				for (i = 0; i < n; i++, d++)
+					apply(d, src[s + i], mask == null ? rows : mask[m + i] & rows, rop);
+				continue;
+			}
+
+			if (top >= 0 && top < bufferPages) {
+				d = top * width + x + c0;
+				for (i = 0; i < n; i++, d++)
+					apply(d, src[s + i] << shift, (mask == null ? rows : mask[m + i] & rows) << shift, rop);
+			}
+			if (top + 1 >= 0 && top + 1 < bufferPages) {
+				d = (top + 1) * width + x + c0;
+				for (i = 0; i < n; i++, d++)
+					apply(d, (src[s + i] & 0xFF) >> (8 - shift), (mask == null ? rows : mask[m + i] & rows) >> (8 - shift), rop);
+			}
+		}
+	}
+
+	/**
+	 * Moves the pixels of the w x h region at (x, y) by dx columns and dy rows,
+	 * in place. Pixels moved out of the region are lost, the strips exposed on
+	 * the other side are filled with color (0 white, anything else black).
+	 * Nothing outside the region changes.
+	 *
+	 * A horizontal move shifts whole column bytes, an array copy per page. A
+	 * vertical move shifts each column of the region as one 64 bit word, or
+	 * page byte by page byte in buffers taller than 64 rows (the PCD8544 has
+	 * 48).
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param dx	positive to the right
+	 * @param dy	positive down
+	 * @param color
+	 */
+	public void scroll(int x, int y, int w, int h, int dx, int dy, int color) {
+		int x0 = Math.max(x, 0);
+		int x1 = Math.min(x + w - 1, width - 1);
+		int y0 = Math.max(y, 0);
+		int y1 = Math.min(y + h - 1, height - 1);
+		if (x0 > x1 || y0 > y1)
+			return;
+
+		if (dx != 0)
+			scrollColumns(x0, x1, y0, y1, dx, color);
+		if (dy != 0)
+			scrollRows(x0, x1, y0, y1, dy, color);
+	}
+
+	private void scrollColumns(int x0, int x1, int y0, int y1, int dx, int color) {
+		int n = x1 - x0 + 1;
+		if (Math.abs(dx) >= n) {
+			fillRect(x0, y0, n, y1 - y0 + 1, color);
+			return;
+		}
+
+		int p0 = y0 >> 3;
+		int p1 = y1 >> 3;
+		for (int p = p0; p <= p1; p++) {
+			int mask = 0xFF;
+			if (p == p0) mask &= TOP_MASK[y0 & 7];
+			if (p == p1) mask &= BOTTOM_MASK[y1 & 7];
+			int row = p * width;
+			int i;
+
+			if (mask == 0xFF) {
+				if (dx > 0)
+					System.arraycopy(bytes, row + x0, bytes, row + x0 + dx, n - dx);
+				else
+					System.arraycopy(bytes, row + x0 - dx, bytes, row + x0, n + dx);
+			} else if (dx > 0) {
+				for (i = row + x1; i >= row + x0 + dx; i--)
+					bytes[i] = (byte) ((bytes[i] & ~mask) | (bytes[i - dx] & mask));
+			} else {
+				for (i = row + x0; i <= row + x1 + dx; i++)
+					bytes[i] = (byte) ((bytes[i] & ~mask) | (bytes[i - dx] & mask));
+			}
+
+			// the exposed columns
+			if (dx > 0)
+				fillColumns(row + x0, row + x0 + dx - 1, mask, color);
+			else
+				fillColumns(row + x1 + dx + 1, row + x1, mask, color);
+		}
+	}
+
+	private void scrollRows(int x0, int x1, int y0, int y1, int dy, int color) {
+		if (Math.abs(dy) > y1 - y0) {
+			fillRect(x0, y0, x1 - x0 + 1, y1 - y0 + 1, color);
+			return;
+		}
+		if (height > 64) {
+			scrollPages(x0, x1, y0, y1, dy, color);
+			return;
+		}
+
+		int p0 = y0 >> 3;
+		int p1 = y1 >> 3;
+		// rows y0..y1 of a column, and the rows exposed by the move
+		long region = (-1L >>> (63 - y1)) & (-1L << y0);
+		long exposed = dy > 0 ? region & ~(region << dy) : region & ~(region >>> -dy);
+		long fill = color != 0 ? exposed : 0;
+
+		for (int x = x0; x <= x1; x++) {
+			long column = 0;
+			int p;
+			for (p = p0; p <= p1; p++)
+				column |= (bytes[x + p * width] & 0xFFL) << (p << 3);
+
+			long moved = dy > 0 ? column << dy : column >>> -dy;
+			column = (column & ~region) | (moved & region & ~exposed) | fill;
+
+			for (p = p0; p <= p1; p++)
+				bytes[x + p * width] = (byte) (column >>> (p << 3));
+		}
+	}
+
+	// scrollRows for buffers taller than 64 rows. Each page byte of a column
+	// is made of two source bytes, dy rows up or down. The pages are done in
+	// the direction that reads each source before it's overwritten.
+	private void scrollPages(int x0, int x1, int y0, int y1, int dy, int color) {
+		int p0 = y0 >> 3;
+		int p1 = y1 >> 3;
+		int step = dy > 0 ? -1 : 1;
+
+		for (int x = x0; x <= x1; x++) {
+			for (int p = dy > 0 ? p1 : p0; p >= p0 && p <= p1; p += step) {
+				int region = rowMask(p, y0, y1);
+				// the rows of the region whose source row is in the region too
+				int keep = region & rowMask(p, y0 + dy, y1 + dy);
+				int exposed = region & ~keep;
+
+				int top = (p << 3) - dy;		// the source of the first row of the page
+				int k = top >> 3;
+				int s = top & 7;
+				int moved = ((columnByte(x, k) >>> s) | (columnByte(x, k + 1) << (8 - s))) & 0xFF;
+
+				int i = x + p * width;
+				bytes[i] = (byte) ((bytes[i] & ~region) | (moved & keep) | (color != 0 ? exposed : 0));
+			}
+		}
+	}
+
+	// the bits of page p for the rows y0..y1
+	private static int rowMask(int p, int y0, int y1) {
+		int lo = Math.max(y0 - (p << 3), 0);
+		int hi = Math.min(y1 - (p << 3), 7);
+		if (lo > hi)
+			return 0;
+		return (0xFF >> (7 - hi)) & (0xFF << lo);
+	}
+
+	// the byte of column x in page p, 0 outside the buffer
+	private int columnByte(int x, int p) {
+		if (p < 0 || p >= height >> 3)
+			return 0;
+		return bytes[x + p * width] & 0xFF;
+	}
+
+	// combines the m bits of s with bytes[d], the other bits of bytes[d] are kept
+	private void apply(int d, int s, int m, int rop) {
+		m &= 0xFF;
+		if (m == 0)
+			return;
+		switch (rop) {
+		case ROP_COPY:
+			bytes[d] = (byte) ((bytes[d] & ~m) | (s & m));
+			break;
+		case ROP_OR:
+			bytes[d] |= s & m;
+			break;
+		case ROP_AND:
+			bytes[d] &= s | ~m;
+			break;
+		case ROP_XOR:
+			bytes[d] ^= s & m;
+			break;
+		case ROP_CLEAR:
+			bytes[d] &= ~(s & m);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown raster op " + rop);
+		}
+	}
+
+	private void checkSize(FrameBuffer other) {
+		if (other.bytes.length != bytes.length)
+			throw new IllegalArgumentException("Frame buffers have different sizes");
+	}
+}
@@ -0,0 +1,161 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : FrameDiffer.java
+
+	 Description :
+	     Keeps a shadow copy of what the LCD RAM holds, and only sends the bytes
+	     of the frame buffer that differ from it.
+
+	     In horizontal addressing mode the PCD8544 address moves to the next
+	     column after each data byte, and from the last column of a page to the
+	     first column of the next one. So the RAM is one linear run of
+	     width*pages bytes, and a new run of changed bytes only needs addressing
+	     commands when it doesn't start where the previous one stopped.
+
+	     Between two changed runs there is a choice: bridge the gap by sending the
+	     unchanged bytes again, or jump over it with SETXADDR (and SETYADDR when
+	     the page changes). The jump costs transport.getRestartCost() data bytes
+	     per command byte, so gaps up to that size are bridged.
+*/
+
+public class FrameDiffer {
+
+	private static final int PCD8544_SETYADDR =0x40;
+	private static final int PCD8544_SETXADDR =0x80;
+
+	private final int width;
+	private final byte shadow[];
+
+	// false when the LCD RAM content is unknown, e.g. right after a reset
+	private volatile boolean valid;
+
+	private long bytesSent;
+	private long bytesSkipped;
+	private long commandsSent;
+
+	public FrameDiffer(int width, int height) {
+		this.width = width;
+		this.shadow = new byte[width * height / 8];
+	}
+
+	/**
+	 * Forgets what the LCD holds, so the next transmit sends every dirty byte
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Sends the bytes of the dirty region of buffer that are not on the LCD yet,
+	 * and marks the region clean.
+	 *
+	 * @param buffer	the frame buffer bytes
+	 * @param dirty		the region to look at
+	 * @param transport
+	 */
+	public void transmit(byte[] buffer, DamageTracker dirty, LCDTransport transport) {
+		boolean known = valid;
+		int restart = transport.getRestartCost();
+
+		int address = -1;		// where the LCD will write the next data byte, -1 if unknown
+		int runStart = -1;		// the bytes runStart..runEnd still have to be sent
+		int runEnd = -1;
+		long scanned = 0;
+		long sent = 0;
+		long commands = 0;
+
+		for (int p = 0; p < dirty.getPages(); p++) {
+			if (!dirty.isPageDirty(p))
+				continue;
+
+			int last = p * width + dirty.getColumnMax(p);
+			for (int i = p * width + dirty.getColumnMin(p); i <= last; i++) {
+				scanned++;
+				if (known && buffer[i] == shadow[i])
+					continue;
+
+				if (runStart >= 0) {
+					int gap = i - runEnd - 1;
+					int jump = restart * ((i / width == (runEnd + 1) / width) ? 1 : 2);
+					if (gap <= jump) {
+						runEnd = i;
+						continue;
+					}
+					commands += address(address, runStart, transport);
+					sent += send(buffer, runStart, runEnd, transport);
+					address = (runEnd + 1) % shadow.length;
+				}
+				runStart = runEnd = i;
+			}
+			dirty.clearPage(p);
+		}
+
+		if (runStart >= 0) {
+			commands += address(address, runStart, transport);
+			sent += send(buffer, runStart, runEnd, transport);
+		}
+		if (sent > 0) {
+			transport.command(PCD8544_SETYADDR );  // no idea why this is necessary but it is to finish the last byte?
+			commands++;
+		}
+
+		// a full pass over the screen makes the whole shadow known
+		if (!known && scanned == shadow.length)
+			valid = true;
+
+		synchronized (this) {
+			bytesSent += sent;
+			bytesSkipped += Math.max(0, scanned - sent);
+			commandsSent += commands;
+		}
+	}
+
+	// moves the LCD address from current to target, returns how many commands it took
+	private int address(int current, int target, LCDTransport transport) {
+		if (current == target)
+			return 0;
+		int n = 0;
+		if (current < 0 || current / width != target / width) {
+			transport.command(PCD8544_SETYADDR | (target / width));
+			n++;
+		}
+		if (current < 0 || current % width != target % width) {
+			transport.command(PCD8544_SETXADDR | (target % width));
+			n++;
+		}
+		return n;
+	}
+
+	private int send(byte[] buffer, int from, int to, LCDTransport transport) {
+		int len = to - from + 1;
+		transport.data(buffer, from, len);
+		System.arraycopy(buffer, from, shadow, from, len);
+		return len;
+	}
+
+	/**
+	 * Data bytes put on the wire, bridged unchanged bytes included
+	 */
+	public synchronized long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * Dirty bytes that were not sent because the LCD already had them
+	 */
+	public synchronized long getBytesSkipped() {
+		return bytesSkipped;
+	}
+
+	/**
+	 * Addressing commands sent to jump over unchanged bytes
+	 */
+	public synchronized long getCommandsSent() {
+		return commandsSent;
+	}
+
+	public synchronized void resetCounters() {
+		bytesSent = bytesSkipped = commandsSent = 0;
+	}
+}
@@ -0,0 +1,14 @@
+package com.jpcd8544;
+
+/**
+ * Called each time a frame published with LCDSwapBuffers is completely on the
+ * LCD, in frame order, from a listener thread apart from the flusher. It may
+ * draw and publish the next frame, e.g. to render at the LCD pace.
+ */
+public interface FrameListener {
+
+	/**
+	 * @param frame	the number returned by the LCDSwapBuffers future
+	 */
+	public void frameDisplayed(long frame);
+}
@@ -0,0 +1,168 @@
+package com.jpcd8544;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+	 Name		 : FrameMirror.java
+
+	 Description :
+	     A tap on LCDDisplay that copies each displayed frame to a FrameSink, so
+	     the picture of a panel can be looked at from somewhere else (or
+	     without any panel, see NullTransport).
+
+	     The render thread only pays for a 504 bytes copy: the frame goes to a
+	     pending buffer and the encoding is done by a low priority mirror thread.
+	     The mirror writes at most maxFps frames per second. Frames that come
+	     faster replace the pending one, so the sink always gets the latest
+	     picture and the last frame of a burst is never lost, it's written once
+	     the interval is over.
+*/
+
+public class FrameMirror {
+
+	private final FrameSink sink;
+	private final int width;
+	private final int height;
+	private final long intervalNanos;
+	private final ScheduledExecutorService encoder;
+
+	// pending is filled by offer(), work is what the mirror thread encodes
+	private byte pending[];
+	private byte work[];
+	private boolean scheduled;
+	private boolean closed;
+	private long lastWrite;
+	private long sequence;
+
+	private long offered;
+	private long coalesced;
+	private long failures;
+	private volatile IOException lastError;
+
+	private final Runnable encode = new Runnable() {
+		public void run() {
+			long seq;
+			synchronized (FrameMirror.this) {
+				byte t[] = work;
+				work = pending;
+				pending = t;
+				scheduled = false;
+				lastWrite = System.nanoTime();
+				seq = ++sequence;
+			}
+			try {
+				sink.write(work, width, height, seq);
+			} catch (IOException e) {
+				synchronized (FrameMirror.this) {
+					failures++;
+				}
+				lastError = e;
+			}
+		}
+	};
+
+	/**
+	 * @param sink
+	 * @param width		of the frames, LCDWIDTH
+	 * @param height	of the frames, LCDHEIGHT
+	 * @param maxFps	frames per second written at most, 0 for no limit
+	 */
+	public FrameMirror(FrameSink sink, int width, int height, double maxFps) {
+		this.sink = sink;
+		this.width = width;
+		this.height = height;
+		this.intervalNanos = maxFps > 0 ? (long) (1e9 / maxFps) : 0;
+		this.pending = new byte[width * height / 8];
+		this.work = new byte[width * height / 8];
+		this.lastWrite = System.nanoTime() - intervalNanos;
+		this.encoder = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "PCD8544 mirror");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Hands a frame to the mirror. Returns right away, the frame is copied.
+	 *
+	 * @param frame
+	 */
+	public synchronized void offer(byte[] frame) {
+		if (closed)
+			return;
+		System.arraycopy(frame, 0, pending, 0, pending.length);
+		offered++;
+		if (scheduled) {
+			// the previous one was not written yet, this one takes its place
+			coalesced++;
+			return;
+		}
+		scheduled = true;
+		long delay = lastWrite + intervalNanos - System.nanoTime();
+		encoder.schedule(encode, Math.max(0, delay), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Frames handed to the mirror
+	 */
+	public synchronized long getFramesOffered() {
+		return offered;
+	}
+
+	/**
+	 * Frames given to the sink
+	 */
+	public synchronized long getFramesWritten() {
+		return sequence;
+	}
+
+	/**
+	 * Frames replaced by a newer one before they were written, because of the
+	 * rate limit or a slow sink
+	 */
+	public synchronized long getFramesCoalesced() {
+		return coalesced;
+	}
+
+	/**
+	 * Frames the sink failed to write
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * The last exception thrown by the sink, or null
+	 */
+	public IOException getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Writes the pending frame, if any, and closes the sink
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		// delayed frames still get written after a shutdown
+		encoder.shutdown();
+		try {
+			encoder.awaitTermination(Math.max(1000000000L, 2 * intervalNanos), TimeUnit.NANOSECONDS);
+			sink.close();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			throw new LCDException("Can't close the mirror sink", e);
+		}
+	}
+}
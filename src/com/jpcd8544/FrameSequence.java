@@ -0,0 +1,191 @@
+package com.jpcd8544;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+	 Name		 : FrameSequence.java
+
+	 Description :
+	     A sequence of frames (boot animation, canned screens...) stored in a
+	     file mapped in memory, decoded in place: nothing is copied to the heap
+	     but the frame being shown. Files are made by FrameSequenceWriter.
+
+	     Layout, big endian:
+	       0  int   MAGIC
+	       4  int   VERSION
+	       8  int   width
+	       12 int   height
+	       16 int   frame count
+	       20 int   frame duration, microseconds
+	       24       index, one int per frame: file offset of the frame
+	     A frame is one flags byte (KEY), then one record per page:
+	       SKIP   the page didn't change
+	       RAW    width bytes
+	       DELTA  runs of (skip, count, count bytes) until the page width, the
+	              skipped columns didn't change
+	       RLE    runs of (count, byte) until the page width
+	     Counts are unsigned bytes. A KEY frame has no SKIP or DELTA record, it
+	     decodes the same whatever was on the screen, so playback can start
+	     (or loop back) there. Frame 0 is always a KEY frame.
+*/
+
+public class FrameSequence {
+
+	public static final int MAGIC = 0x50434453;	// "PCDS"
+	public static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 24;
+
+	// frame flags
+	static final int KEY = 1;
+
+	// page records
+	static final int SKIP = 0;
+	static final int RAW = 1;
+	static final int DELTA = 2;
+	static final int RLE = 3;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer data;
+	private final int width;
+	private final int height;
+	private final int frames;
+	private final int frameMicros;
+
+	public FrameSequence(String path) {
+		try {
+			file = new RandomAccessFile(path, "r");
+			data = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		} catch (IOException e) {
+			throw new LCDException("Can't map the frame sequence " + path, e);
+		}
+		if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC)
+			throw new LCDException(path + " is not a frame sequence");
+		if (data.getInt(4) != VERSION)
+			throw new LCDException(path + " has version " + data.getInt(4));
+		width = data.getInt(8);
+		height = data.getInt(12);
+		frames = data.getInt(16);
+		frameMicros = data.getInt(20);
+		if (frames < 1 || data.capacity() < HEADER_SIZE + frames * 4)
+			throw new LCDException(path + " is truncated");
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getFrameCount() {
+		return frames;
+	}
+
+	/**
+	 * How long each frame stays on the screen, in nanoseconds
+	 */
+	public long getFrameNanos() {
+		return frameMicros * 1000L;
+	}
+
+	public boolean isKeyFrame(int n) {
+		return (data.get(offset(n)) & KEY) != 0;
+	}
+
+	/**
+	 * The last KEY frame at or before frame n, where decoding has to start
+	 * to show frame n on an unknown screen
+	 *
+	 * @param n
+	 */
+	public int getKeyFrame(int n) {
+		while (n > 0 && !isKeyFrame(n))
+			n--;
+		return n;
+	}
+
+	private int offset(int n) {
+		if (n < 0 || n >= frames)
+			throw new IndexOutOfBoundsException("Frame " + n + " of " + frames);
+		return data.getInt(HEADER_SIZE + n * 4);
+	}
+
+	/**
+	 * Applies frame n to dst, which must hold frame n-1 unless n is a KEY
+	 * frame. The columns that changed are marked in damage.
+	 *
+	 * @param n
+	 * @param dst		width*height/8 bytes, packed like the display RAM
+	 * @param damage	may be null
+	 */
+	public void decode(int n, byte[] dst, DamageTracker damage) {
+		int pos = offset(n) + 1;
+		for (int p = 0; p < height / 8; p++) {
+			int base = p * width;
+			int op = data.get(pos++);
+			int x, count;
+
+			switch (op) {
+			case SKIP:
+				break;
+
+			case RAW:
+				for (x = 0; x < width; x++)
+					dst[base + x] = data.get(pos++);
+				if (damage != null)
+					damage.mark(0, p * 8, width - 1, p * 8 + 7);
+				break;
+
+			case DELTA:
+				int first = width, last = -1;
+				x = 0;
+				while (x < width) {
+					x += data.get(pos++) & 0xFF;
+					count = data.get(pos++) & 0xFF;
+					if (count == 0)
+						continue;
+					if (x < first)
+						first = x;
+					for (; count > 0; count--)
+						dst[base + x++] = data.get(pos++);
+					last = x - 1;
+				}
+				if (damage != null && last >= 0)
+					damage.mark(first, p * 8, last, p * 8 + 7);
+				break;
+
+			case RLE:
+				x = 0;
+				while (x < width) {
+					count = data.get(pos++) & 0xFF;
+					byte b = data.get(pos++);
+					for (; count > 0; count--)
+						dst[base + x++] = b;
+				}
+				if (damage != null)
+					damage.mark(0, p * 8, width - 1, p * 8 + 7);
+				break;
+
+			default:
+				throw new LCDException("Bad page record " + op + " in frame " + n);
+			}
+		}
+	}
+
+	/**
+	 * Unmaps the file, as far as Java lets us: the mapping goes away with the
+	 * buffer, once it's garbage collected
+	 */
+	public void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			throw new LCDException("Can't close the frame sequence", e);
+		}
+	}
+}
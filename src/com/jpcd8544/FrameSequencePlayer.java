@@ -0,0 +1,201 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : FrameSequencePlayer.java
+
+	 Description :
+	     Plays a FrameSequence on an LCD from its own thread. Each frame is
+	     decoded from the mapped file straight into the LCD memory buffer, and
+	     only its changed columns are marked, so LCDDisplay sends nothing for
+	     the SKIP pages and only the DELTA runs of the others.
+
+	     The frames are shown on an absolute schedule, start + n * duration,
+	     so the rate doesn't drift with the decode and flush times. A frame more
+	     than one duration late is decoded but not displayed (its damage goes
+	     out with the next one), so a slow flush costs frames, not time.
+	     Playing allocates nothing per frame.
+*/
+
+public class FrameSequencePlayer {
+
+	private final JPCD8544 lcd;
+	private final FrameSequence sequence;
+	private final DamageTracker damage;
+	private final long frameNanos;
+
+	private Thread thread;
+	private volatile boolean running;
+	private boolean loop;
+	private int position;
+
+	private long shown;
+	private long dropped;
+	private long maxLateNanos;
+
+	public FrameSequencePlayer(JPCD8544 lcd, FrameSequence sequence) {
+		FrameBuffer frame = lcd.LCDGetFrameBuffer();
+		if (sequence.getWidth() != frame.getWidth() || sequence.getHeight() != frame.getHeight())
+			throw new IllegalArgumentException("The sequence is " + sequence.getWidth() + "x" + sequence.getHeight());
+		this.lcd = lcd;
+		this.sequence = sequence;
+		this.damage = new DamageTracker(sequence.getWidth(), sequence.getHeight());
+		this.frameNanos = sequence.getFrameNanos();
+	}
+
+	/**
+	 * Starts playing from the current position (the first frame, or where
+	 * stop left it)
+	 *
+	 * @param loop	start over after the last frame, until stop
+	 */
+	public synchronized void play(boolean loop) {
+		if (running)
+			return;
+		this.loop = loop;
+		running = true;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				playLoop();
+			}
+		}, "PCD8544 player");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops after the current frame and waits for the player thread
+	 */
+	public void stop() {
+		Thread t;
+		synchronized (this) {
+			running = false;
+			t = thread;
+		}
+		if (t == null || t == Thread.currentThread())
+			return;
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until the sequence is over (never, when looping)
+	 */
+	public void awaitEnd() throws InterruptedException {
+		Thread t;
+		synchronized (this) {
+			t = thread;
+		}
+		if (t != null)
+			t.join();
+	}
+
+	public boolean isPlaying() {
+		return running;
+	}
+
+	/**
+	 * Shows frame n now, decoding from its KEY frame. Only while stopped.
+	 *
+	 * @param n
+	 */
+	public synchronized void seek(int n) {
+		if (running)
+			throw new IllegalStateException("Stop the player first");
+		for (int k = sequence.getKeyFrame(n); k <= n; k++)
+			decode(k);
+		lcd.LCDDisplay();
+		position = n + 1 < sequence.getFrameCount() ? n + 1 : 0;
+	}
+
+	// decodes frame n into the LCD buffer and marks what changed
+	private void decode(int n) {
+		PageLocks locks = lcd.LCDGetPageLocks();
+		int pages = locks.lockAll();
+		try {
+			sequence.decode(n, lcd.LCDGetFrameBuffer().getBytes(), damage);
+			for (int p = 0; p < damage.getPages(); p++) {
+				if (damage.isPageDirty(p))
+					lcd.updateBoundingBox(damage.getColumnMin(p), p * 8, damage.getColumnMax(p), p * 8 + 7);
+			}
+			damage.clear();
+		} finally {
+			locks.unlock(pages);
+		}
+	}
+
+	private void playLoop() {
+		int n;
+		synchronized (this) {
+			n = position;
+		}
+		// the screen content is unknown, start from the KEY frame
+		int k = sequence.getKeyFrame(n);
+		for (; k < n; k++)
+			decode(k);
+
+		long start = System.nanoTime();
+		long frames = 0;
+		try {
+			while (running) {
+				decode(n);
+
+				long deadline = start + frames * frameNanos;
+				long late = System.nanoTime() - deadline;
+				if (late > frameNanos) {
+					synchronized (this) {
+						dropped++;
+					}
+				} else {
+					if (late < 0)
+						LCDTiming.delayNanos(-late);
+					lcd.LCDDisplay();
+					late = System.nanoTime() - deadline;
+					synchronized (this) {
+						shown++;
+						if (late > maxLateNanos)
+							maxLateNanos = late;
+					}
+				}
+
+				frames++;
+				if (++n == sequence.getFrameCount()) {
+					n = 0;
+					if (!loop) {
+						// the last frame stays for its duration
+						LCDTiming.delayNanos(start + frames * frameNanos - System.nanoTime());
+						break;
+					}
+				}
+			}
+		} finally {
+			synchronized (this) {
+				position = n;
+				running = false;
+			}
+		}
+	}
+
+	/**
+	 * Frames sent to the LCD
+	 */
+	public synchronized long getFramesShown() {
+		return shown;
+	}
+
+	/**
+	 * Frames decoded too late to be shown
+	 */
+	public synchronized long getFramesDropped() {
+		return dropped;
+	}
+
+	/**
+	 * The most a frame reached the LCD after its time, in nanoseconds
+	 */
+	public synchronized long getMaxLateNanos() {
+		return maxLateNanos;
+	}
+}
@@ -0,0 +1,301 @@
+package com.jpcd8544;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+/*
+	 Name		 : FrameSequenceWriter.java
+
+	 Description :
+	     Builds a frame sequence file (see FrameSequence). Each page of each
+	     frame is compared with the previous frame and stored as the smallest of
+	     SKIP, DELTA, RLE and RAW.
+
+	     Run it on its own to make an animation out of pictures. PBM files are
+	     read as they are, other images (PNG, GIF...) are scaled and dithered
+	     with ImageConverter:
+	       java -cp jpcd8544.jar com.jpcd8544.FrameSequenceWriter boot.pcds 12 f*.pbm
+*/
+
+public class FrameSequenceWriter {
+
+	private final File file;
+	private final int width;
+	private final int height;
+	private final int frameMicros;
+	private int keyInterval;
+
+	private final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+	private int offsets[] = new int[64];
+	private int count;
+	private final byte previous[];
+	private final byte page[];
+	private long rawBytes;
+
+	/**
+	 * @param file		created or overwritten by close()
+	 * @param width
+	 * @param height	a multiple of 8
+	 * @param fps		frames per second of the playback
+	 */
+	public FrameSequenceWriter(File file, int width, int height, double fps) {
+		this.file = file;
+		this.width = width;
+		this.height = height;
+		this.frameMicros = (int) Math.round(1e6 / fps);
+		this.previous = new byte[width * height / 8];
+		// the worst case record: a DELTA alternating one changed column and one skip
+		this.page = new byte[2 * width + 2 * (width / 2 + 1)];
+	}
+
+	/**
+	 * Makes every n-th frame a KEY frame, where a player can seek to. 0 (the
+	 * default) makes only the first frame one.
+	 *
+	 * @param n
+	 */
+	public void setKeyFrameInterval(int n) {
+		keyInterval = n;
+	}
+
+	/**
+	 * Appends a frame
+	 *
+	 * @param frame		width*height/8 bytes, packed like the display RAM
+	 */
+	public void addFrame(byte[] frame) {
+		boolean key = count == 0 || (keyInterval > 0 && count % keyInterval == 0);
+		if (count == offsets.length) {
+			int t[] = new int[count * 2];
+			System.arraycopy(offsets, 0, t, 0, count);
+			offsets = t;
+		}
+		offsets[count++] = frames.size();
+		frames.write(key ? FrameSequence.KEY : 0);
+
+		for (int p = 0; p < height / 8; p++) {
+			int base = p * width;
+			int delta = key ? Integer.MAX_VALUE : encodeDelta(frame, base);
+			if (delta == 0) {
+				frames.write(FrameSequence.SKIP);
+				continue;
+			}
+			int rle = rleSize(frame, base);
+			if (delta <= rle && delta <= width) {
+				// page still holds the DELTA encoding
+				frames.write(FrameSequence.DELTA);
+				frames.write(page, 0, delta);
+			} else if (rle < width) {
+				frames.write(FrameSequence.RLE);
+				encodeRle(frame, base);
+			} else {
+				frames.write(FrameSequence.RAW);
+				frames.write(frame, base, width);
+			}
+		}
+		System.arraycopy(frame, 0, previous, 0, previous.length);
+		rawBytes += previous.length;
+	}
+
+	public void addFrame(FrameBuffer frame) {
+		addFrame(frame.getBytes());
+	}
+
+	/**
+	 * Writes the page as DELTA runs into page[]
+	 *
+	 * @return the size of the runs, 0 if the page didn't change
+	 */
+	private int encodeDelta(byte[] frame, int base) {
+		int n = 0;
+		int x = 0;
+		boolean changed = false;
+		while (x < width) {
+			int skip = 0;
+			while (x + skip < width && frame[base + x + skip] == previous[base + x + skip])
+				skip++;
+			if (x + skip == width) {
+				if (!changed)
+					return 0;
+				// the rest of the page is unchanged
+				while (skip > 0) {
+					int s = Math.min(skip, 255);
+					page[n++] = (byte) s;
+					page[n++] = 0;
+					skip -= s;
+				}
+				break;
+			}
+			changed = true;
+			while (skip > 255) {
+				page[n++] = (byte) 255;
+				page[n++] = 0;
+				skip -= 255;
+			}
+			x += skip;
+
+			// a run ends at 2 unchanged columns in a row, a shorter gap costs
+			// less to copy than a new run header
+			int end = x + 1;
+			while (end < width && end - x < 255) {
+				if (frame[base + end] != previous[base + end]) {
+					end++;
+				} else if (end + 1 < width && end + 1 - x < 255 && frame[base + end + 1] != previous[base + end + 1]) {
+					end += 2;
+				} else {
+					break;
+				}
+			}
+			page[n++] = (byte) skip;
+			page[n++] = (byte) (end - x);
+			for (; x < end; x++)
+				page[n++] = frame[base + x];
+		}
+		return n;
+	}
+
+	// the size of the RLE runs of a page
+	private int rleSize(byte[] frame, int base) {
+		int n = 0;
+		for (int x = 0; x < width; ) {
+			int run = 1;
+			while (x + run < width && run < 255 && frame[base + x + run] == frame[base + x])
+				run++;
+			n += 2;
+			x += run;
+		}
+		return n;
+	}
+
+	private void encodeRle(byte[] frame, int base) {
+		for (int x = 0; x < width; ) {
+			int run = 1;
+			while (x + run < width && run < 255 && frame[base + x + run] == frame[base + x])
+				run++;
+			frames.write(run);
+			frames.write(frame[base + x]);
+			x += run;
+		}
+	}
+
+	public int getFrameCount() {
+		return count;
+	}
+
+	/**
+	 * The size of the frames once encoded, against their raw size
+	 */
+	public double getCompressionRatio() {
+		return frames.size() == 0 ? 1 : (double) rawBytes / frames.size();
+	}
+
+	/**
+	 * Writes the file
+	 */
+	public void close() throws IOException {
+		if (count == 0)
+			throw new IllegalStateException("No frames");
+		int start = FrameSequence.HEADER_SIZE + count * 4;
+
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			out.writeInt(FrameSequence.MAGIC);
+			out.writeInt(FrameSequence.VERSION);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(count);
+			out.writeInt(frameMicros);
+			for (int i = 0; i < count; i++)
+				out.writeInt(start + offsets[i]);
+			frames.writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a binary (P4) PBM file as gray pixels, 0 black, 255 white
+	 *
+	 * @param in
+	 * @param size	gets the width and the height
+	 */
+	static byte[] readPbm(InputStream in, int[] size) throws IOException {
+		if (in.read() != 'P' || in.read() != '4')
+			throw new IOException("Not a binary PBM file");
+		int w = pbmNumber(in);
+		int h = pbmNumber(in);
+		int stride = (w + 7) / 8;
+		byte gray[] = new byte[w * h];
+		for (int y = 0; y < h; y++) {
+			for (int b = 0; b < stride; b++) {
+				int v = in.read();
+				if (v < 0)
+					throw new IOException("Truncated PBM file");
+				for (int k = 0; k < 8 && b * 8 + k < w; k++)
+					gray[y * w + b * 8 + k] = (byte) (((v << k) & 0x80) != 0 ? 0 : 255);
+			}
+		}
+		size[0] = w;
+		size[1] = h;
+		return gray;
+	}
+
+	// a header number, after blanks and comments; eats the single blank after it
+	private static int pbmNumber(InputStream in) throws IOException {
+		int c = in.read();
+		while (c == '#' || Character.isWhitespace(c)) {
+			if (c == '#')
+				while (c != '\n' && c >= 0)
+					c = in.read();
+			c = in.read();
+		}
+		int n = 0;
+		while (c >= '0' && c <= '9') {
+			n = n * 10 + c - '0';
+			c = in.read();
+		}
+		return n;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: FrameSequenceWriter out.pcds fps picture...");
+			System.exit(1);
+		}
+		FrameSequenceWriter w = new FrameSequenceWriter(new File(args[0]), 84, 48, Double.parseDouble(args[1]));
+		ImageConverter converter = new ImageConverter(84, 48, null);
+		byte frame[] = new byte[84 * 48 / 8];
+		int size[] = new int[2];
+
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].toLowerCase().endsWith(".pbm")) {
+				InputStream in = new BufferedInputStream(new FileInputStream(args[i]));
+				try {
+					byte gray[] = readPbm(in, size);
+					converter.setMode(ImageConverter.THRESHOLD);
+					converter.convertGray(gray, size[0], size[1], frame);
+				} finally {
+					in.close();
+				}
+			} else {
+				BufferedImage image = ImageIO.read(new File(args[i]));
+				if (image == null)
+					throw new IOException("Can't read " + args[i]);
+				converter.setMode(ImageConverter.FLOYD_STEINBERG);
+				converter.convert(image, frame);
+			}
+			w.addFrame(frame);
+		}
+		w.close();
+		System.out.printf("%d frames, %.1f:1%n", w.getFrameCount(), w.getCompressionRatio());
+	}
+}
@@ -0,0 +1,30 @@
+package com.jpcd8544;
+
+import java.io.IOException;
+
+/*
+	 Name		 : FrameSink.java
+
+	 Description :
+	     Where a FrameMirror puts the frames: a PBM or PNG file, a ring file
+	     mapped in memory, a socket... The sink is only called from the mirror
+	     thread, one frame at a time, so it needs no locking of its own.
+*/
+
+public interface FrameSink {
+
+	/**
+	 * Writes one frame
+	 *
+	 * @param frame		packed like the display RAM, index = x + (y/8)*width, bit 0 on top
+	 * @param width
+	 * @param height
+	 * @param sequence	1 for the first frame of the mirror, then counting up
+	 */
+	public void write(byte[] frame, int width, int height, long sequence) throws IOException;
+
+	/**
+	 * Releases the file or stream behind the sink
+	 */
+	public void close() throws IOException;
+}
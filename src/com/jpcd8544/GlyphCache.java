@@ -0,0 +1,106 @@
+package com.jpcd8544;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+	 Name		 : GlyphCache.java
+
+	 Description :
+	     Precompiled character cells for the 5x7 font. Each column of font[] is
+	     already a vertical byte, bit 0 on top, just like a page of the LCD RAM.
+	     So a cell (5 glyph columns plus one spacing column) is kept in the page
+	     layout, ready to be copied to the frame buffer.
+
+	     Cells are built once per text size and color: the color is baked in
+	     (white text is the inverted cell) and bigger sizes are pre-scaled, each
+	     pixel becoming a size x size block. A cell of size s is 6*s columns
+	     wide and s pages tall, stored page by page.
+*/
+
+public class GlyphCache {
+
+	private static final int GLYPHS = 256;
+
+	private final int font[];
+	private final int glyphWidth;
+
+	// size * 2 + color -> the 256 cells of that size and color
+	private final Map<Integer, byte[]> cells = new HashMap<Integer, byte[]>();
+
+	/**
+	 * @param font			glyphWidth vertical bytes per character
+	 * @param glyphWidth	columns per glyph, without the spacing column
+	 */
+	public GlyphCache(int[] font, int glyphWidth) {
+		this.font = font;
+		this.glyphWidth = glyphWidth;
+	}
+
+	/**
+	 * Width of a cell, including the spacing column
+	 *
+	 * @param size
+	 */
+	public int getCellWidth(int size) {
+		return (glyphWidth + 1) * size;
+	}
+
+	/**
+	 * The cells for the given size and color, all 256 characters one after the
+	 * other. Character c starts at getCellOffset(c, size).
+	 *
+	 * @param size	1 for the 5x7 font as is
+	 * @param black	true for black text on white, false for white text on black
+	 */
+	public synchronized byte[] getCells(int size, boolean black) {
+		Integer key = Integer.valueOf(size * 2 + (black ? 1 : 0));
+		byte[] c = cells.get(key);
+		if (c == null) {
+			c = compile(size, black);
+			cells.put(key, c);
+		}
+		return c;
+	}
+
+	public int getCellOffset(int c, int size) {
+		return (c & 0xFF) * getCellWidth(size) * size;
+	}
+
+	private byte[] compile(int size, boolean black) {
+		int cellWidth = getCellWidth(size);
+		int cellSize = cellWidth * size;
+		byte out[] = new byte[GLYPHS * cellSize];
+
+		for (int c = 0; c < GLYPHS; c++) {
+			for (int i = 0; i <= glyphWidth; i++) {
+				// the spacing column is blank
+				int d = (i < glyphWidth && c * glyphWidth + i < font.length) ? font[c * glyphWidth + i] : 0;
+				long column = scaleColumn(d, size);
+				if (!black)
+					column = ~column;
+
+				for (int p = 0; p < size; p++) {
+					byte b = (byte) (column >>> (p * 8));
+					for (int s = 0; s < size; s++) {
+						out[c * cellSize + p * cellWidth + i * size + s] = b;
+					}
+				}
+			}
+		}
+		return out;
+	}
+
+	// stretches the 8 bits of a glyph column to 8*size bits, each bit repeated size times
+	private static long scaleColumn(int d, int size) {
+		if (size == 1)
+			return d & 0xFF;
+		long column = 0;
+		long block = (1L << size) - 1;
+		for (int j = 0; j < 8; j++) {
+			if ((d & (1 << j)) != 0)
+				column |= block << (j * size);
+		}
+		return column;
+	}
+}
@@ -0,0 +1,154 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : GpioMemTransport.java
+
+	 Description :
+	     Bit-bang SPI straight on the GPIO registers, mapped from /dev/gpiomem,
+	     instead of going through pi4j for every pin change. Each bit takes a
+	     GPCLR0 write that drops SCLK (and DIN for a 0 bit) at once, a GPSET0
+	     write for a 1 bit, and a GPSET0 write for the rising SCLK edge. D/C is
+	     only written when it changes, within the register writes of the first
+	     bit of the byte.
+
+	     Pins are BCM GPIO numbers, not the wiringPi numbers of RaspiPin. With
+	     the recommended connection: DIN GPIO18 (wiringPi 1), SCLK GPIO23
+	     (wiringPi 4), D/C GPIO22 (wiringPi 3). CS and RST are not driven here,
+	     tie CS low or leave it to the caller.
+*/
+
+public class GpioMemTransport implements LCDTransport {
+
+	private static final int UNKNOWN = -1;
+
+	private final GpioRegisters registers;
+	private final int din, sclk, dc;
+	private final LCDTiming timing;
+	private int dcState = UNKNOWN;
+
+	private LCDMetrics metrics;
+	private int writes;
+
+	/**
+	 * Maps /dev/gpiomem and drives the pins at up to 4MHz
+	 *
+	 * @param dinBcm
+	 * @param sclkBcm
+	 * @param dcBcm
+	 */
+	public GpioMemTransport(int dinBcm, int sclkBcm, int dcBcm) {
+		this(new MappedGpioRegisters(), dinBcm, sclkBcm, dcBcm, LCDTiming.MAX_SCLK_HZ);
+	}
+
+	/**
+	 * @param registers	the GPIO block, mapped or a stand-in
+	 * @param dinBcm
+	 * @param sclkBcm
+	 * @param dcBcm
+	 * @param sclkHz	SCLK frequency, at most LCDTiming.MAX_SCLK_HZ
+	 */
+	public GpioMemTransport(GpioRegisters registers, int dinBcm, int sclkBcm, int dcBcm, long sclkHz) {
+		this.registers = registers;
+		this.din = 1 << dinBcm;
+		this.sclk = 1 << sclkBcm;
+		this.dc = 1 << dcBcm;
+		this.timing = new LCDTiming(sclkHz);
+
+		output(dinBcm);
+		output(sclkBcm);
+		output(dcBcm);
+		registers.write(GpioRegisters.GPCLR0, sclk);
+	}
+
+	// sets the function of pin to output (001)
+	private void output(int pin) {
+		int offset = GpioRegisters.GPFSEL0 + (pin / 10) * 4;
+		int shift = (pin % 10) * 3;
+		registers.write(offset, (registers.read(offset) & ~(7 << shift)) | (1 << shift));
+	}
+
+	/**
+	 * Counts the register writes as GPIO writes
+	 *
+	 * @param m	null to stop counting
+	 */
+	public void setMetrics(LCDMetrics m) {
+		metrics = m;
+	}
+
+	public void begin() {
+		// every byte goes straight to the registers, nothing to prepare
+	}
+
+	public void command(int c) {
+		send(c, 0);
+		finish();
+	}
+
+	public void data(int c) {
+		send(c, 1);
+		finish();
+	}
+
+	public void data(byte[] buf, int off, int len) {
+		for (int i = off; i < off + len; i++)
+			send(buf[i] & 0xFF, 1);
+		finish();
+	}
+
+	// like a data byte, plus a few register writes to move the address
+	public int getRestartCost() {
+		return 1;
+	}
+
+	public void end() {
+		// nothing is held back
+	}
+
+	public void close() {
+		registers.close();
+	}
+
+	private void send(int c, int kind) {
+		int set, clr;
+		for (int bit = 7; bit >= 0; bit--) {
+			// data setup with the clock low
+			clr = sclk;
+			set = 0;
+			if ((c & (1 << bit)) != 0)
+				set |= din;
+			else
+				clr |= din;
+
+			if (bit == 7 && dcState != kind) {
+				if (kind == 1)
+					set |= dc;
+				else
+					clr |= dc;
+				dcState = kind;
+			}
+
+			registers.write(GpioRegisters.GPCLR0, clr);
+			if (set != 0) {
+				registers.write(GpioRegisters.GPSET0, set);
+				writes++;
+			}
+			timing.halfPeriod();
+
+			// the LCD samples DIN on the rising edge
+			registers.write(GpioRegisters.GPSET0, sclk);
+			timing.halfPeriod();
+			writes += 2;
+		}
+	}
+
+	// the clock idles low between transfers
+	private void finish() {
+		registers.write(GpioRegisters.GPCLR0, sclk);
+		writes++;
+		LCDMetrics m = metrics;
+		if (m != null)
+			m.gpioWrites(writes);
+		writes = 0;
+	}
+}
@@ -0,0 +1,23 @@
+package com.jpcd8544;
+
+/**
+ * The BCM283x GPIO register block, as seen by GpioMemTransport. Offsets are
+ * byte offsets from the start of the block.
+ */
+public interface GpioRegisters {
+
+	// function select, 3 bits per pin, 10 pins per register
+	public static final int GPFSEL0 = 0x00;
+	// writing 1 bits drives the pins high
+	public static final int GPSET0 = 0x1C;
+	// writing 1 bits drives the pins low
+	public static final int GPCLR0 = 0x28;
+	// pin levels
+	public static final int GPLEV0 = 0x34;
+
+	public int read(int offset);
+
+	public void write(int offset, int value);
+
+	public void close();
+}
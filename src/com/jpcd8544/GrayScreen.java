@@ -0,0 +1,334 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : GrayScreen.java
+
+	 Description :
+	     4 gray levels on the monochrome panel by temporal dithering: the LCD
+	     cycles through 3 sub-frames fast enough for the eye to average them,
+	     and a pixel of level L (0 white .. 3 black) is black in sub-frames
+	     0..L-1. The 2 bit pixels are kept in two bit planes, hi and lo, packed
+	     like the display RAM:
+	       sub-frame 0 = hi | lo    (level > 0)
+	       sub-frame 1 = hi         (level > 1)
+	       sub-frame 2 = hi & lo    (level > 2)
+
+	     The sub-frames are sent by a MAX_PRIORITY thread on an absolute
+	     schedule (start + n * period), parking until shortly before each
+	     deadline and spinning the rest, so the lateness doesn't add up. Each
+	     sub-frame is compared with the previous one and only the columns that
+	     changed are marked; with the shadow buffer on, only the changed bytes
+	     go out.
+
+	     Drawing goes to the planes from one thread, commit() publishes them.
+	     The refresh thread takes a committed picture at the start of a gray
+	     cycle, so a cycle never mixes two pictures. While it runs, the refresh
+	     thread owns the LCD, don't call LCDDisplay.
+
+	     The mirrors don't get the sub-frames, only a monochrome picture (the
+	     DARK and BLACK pixels) once per committed picture.
+*/
+
+public class GrayScreen {
+
+	// gray levels
+	public static final int WHITE = 0;
+	public static final int LIGHT = 1;
+	public static final int DARK = 2;
+	public static final int BLACK = 3;
+
+	private static final int SUBFRAMES = 3;
+
+	// weight of the last sub-frame in the average jitter
+	private static final double SMOOTHING = 0.01;
+
+	private final JPCD8544 lcd;
+	private final int width;
+	private final int height;
+
+	// drawn by the caller
+	private final byte hi[];
+	private final byte lo[];
+
+	// sub-frames committed but not taken yet, and the ones being shown
+	private byte ready[][];
+	private byte front[][];
+	private boolean fresh;
+
+	// what the last sub-frame put on the LCD, and the damage of the next one
+	private final byte last[];
+	private final DamageTracker damage;
+
+	private Thread thread;
+	private volatile boolean running;
+	private long periodNanos;
+
+	private long planes;
+	private long cycles;
+	private long overruns;
+	private long startTime;
+	private long lastTime;
+	private double meanJitter;
+	private long maxJitter;
+
+	public GrayScreen(JPCD8544 lcd) {
+		FrameBuffer frame = lcd.LCDGetFrameBuffer();
+		this.lcd = lcd;
+		this.width = frame.getWidth();
+		this.height = frame.getHeight();
+		int size = width * height / 8;
+		this.hi = new byte[size];
+		this.lo = new byte[size];
+		this.ready = new byte[SUBFRAMES][size];
+		this.front = new byte[SUBFRAMES][size];
+		this.last = new byte[size];
+		this.damage = new DamageTracker(width, height);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param level		WHITE, LIGHT, DARK or BLACK
+	 */
+	public void setPixel(int x, int y, int level) {
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height))
+			return;
+		int i = x + (y / 8) * width;
+		int bit = 1 << (y % 8);
+		if ((level & 2) != 0)
+			hi[i] |= bit;
+		else
+			hi[i] &= ~bit;
+		if ((level & 1) != 0)
+			lo[i] |= bit;
+		else
+			lo[i] &= ~bit;
+	}
+
+	public int getPixel(int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height))
+			return WHITE;
+		int i = x + (y / 8) * width;
+		int s = y % 8;
+		return ((hi[i] >> s) & 1) << 1 | ((lo[i] >> s) & 1);
+	}
+
+	public void fillRect(int x, int y, int w, int h, int level) {
+		for (int j = Math.max(y, 0); j < Math.min(y + h, height); j++)
+			for (int i = Math.max(x, 0); i < Math.min(x + w, width); i++)
+				setPixel(i, j, level);
+	}
+
+	/**
+	 * Copies 2 bit pixels, one per byte, row by row
+	 *
+	 * @param levels	w*h pixels, 0 white .. 3 black
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void setPixels(byte[] levels, int x, int y, int w, int h) {
+		for (int j = 0; j < h; j++)
+			for (int i = 0; i < w; i++)
+				setPixel(x + i, y + j, levels[j * w + i] & 3);
+	}
+
+	public void clear() {
+		for (int i = 0; i < hi.length; i++)
+			hi[i] = lo[i] = 0;
+	}
+
+	/**
+	 * The hi bit plane, for bulk drawing
+	 */
+	public byte[] getHighPlane() {
+		return hi;
+	}
+
+	/**
+	 * The lo bit plane, for bulk drawing
+	 */
+	public byte[] getLowPlane() {
+		return lo;
+	}
+
+	/**
+	 * Publishes the picture drawn so far. It's shown from the next gray cycle.
+	 */
+	public void commit() {
+		synchronized (this) {
+			byte s[][] = ready;
+			for (int i = 0; i < hi.length; i++) {
+				s[0][i] = (byte) (hi[i] | lo[i]);
+				s[1][i] = hi[i];
+				s[2][i] = (byte) (hi[i] & lo[i]);
+			}
+			fresh = true;
+		}
+	}
+
+	/**
+	 * Starts the refresh thread
+	 *
+	 * @param planeHz	sub-frames per second, the gray cycle is 3 of them
+	 */
+	public synchronized void start(double planeHz) {
+		if (running)
+			return;
+		periodNanos = (long) (1e9 / planeHz);
+		planes = cycles = overruns = 0;
+		meanJitter = 0;
+		maxJitter = 0;
+		running = true;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				refreshLoop();
+			}
+		}, "PCD8544 gray");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Stops the refresh thread. The LCD keeps the last sub-frame; draw and
+	 * LCDDisplay a picture to replace it.
+	 */
+	public void stop() {
+		Thread t;
+		synchronized (this) {
+			running = false;
+			t = thread;
+			thread = null;
+		}
+		if (t == null)
+			return;
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// the memory buffer no longer matches the LCD
+		lcd.invalidateLCD();
+	}
+
+	private void refreshLoop() {
+		long start = System.nanoTime();
+		long n = 0;
+		int k = 0;
+		boolean first = true;
+
+		synchronized (this) {
+			startTime = lastTime = start;
+		}
+		while (running) {
+			if (k == 0) {
+				synchronized (this) {
+					if (fresh) {
+						byte t[][] = front;
+						front = ready;
+						ready = t;
+						fresh = false;
+						lcd.mirrorFrame(front[1]);
+					}
+				}
+			}
+
+			long deadline = start + n * periodNanos;
+			LCDTiming.delayNanos(deadline - System.nanoTime());
+			long now = System.nanoTime();
+
+			byte plane[] = front[k];
+			if (first) {
+				damage.markAll();
+				first = false;
+			} else {
+				markChanges(plane);
+			}
+			lcd.transmitPlane(plane, damage);
+			System.arraycopy(plane, 0, last, 0, last.length);
+
+			long jitter = now - deadline;
+			synchronized (this) {
+				planes++;
+				if (k == SUBFRAMES - 1)
+					cycles++;
+				lastTime = now;
+				meanJitter += SMOOTHING * (jitter - meanJitter);
+				if (jitter > maxJitter)
+					maxJitter = jitter;
+			}
+
+			n++;
+			k = (k + 1) % SUBFRAMES;
+			// more than a period behind: start the schedule over instead of
+			// rushing sub-frames out, which would show as a flash
+			if (System.nanoTime() - (start + n * periodNanos) > periodNanos) {
+				synchronized (this) {
+					overruns++;
+				}
+				start = System.nanoTime() - n * periodNanos;
+			}
+		}
+	}
+
+	// marks the columns of plane that differ from the last sub-frame sent
+	private void markChanges(byte[] plane) {
+		for (int p = 0; p < height / 8; p++) {
+			int base = p * width;
+			int x0 = 0;
+			int x1 = width - 1;
+			while (x0 <= x1 && plane[base + x0] == last[base + x0])
+				x0++;
+			if (x0 > x1)
+				continue;
+			while (plane[base + x1] == last[base + x1])
+				x1--;
+			damage.mark(x0, p * 8, x1, p * 8 + 7);
+		}
+	}
+
+	/**
+	 * Sub-frames sent since start
+	 */
+	public synchronized long getPlanesShown() {
+		return planes;
+	}
+
+	/**
+	 * Complete gray cycles (3 sub-frames) since start
+	 */
+	public synchronized long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * Sub-frames per second achieved since start
+	 */
+	public synchronized double getPlaneRate() {
+		return lastTime > startTime ? (planes - 1) * 1e9 / (lastTime - startTime) : 0;
+	}
+
+	/**
+	 * How late a sub-frame starts after its deadline, on average, in nanoseconds
+	 */
+	public synchronized double getMeanJitterNanos() {
+		return meanJitter;
+	}
+
+	/**
+	 * The latest a sub-frame started after its deadline, in nanoseconds
+	 */
+	public synchronized long getMaxJitterNanos() {
+		return maxJitter;
+	}
+
+	/**
+	 * Times the schedule fell more than a period behind and started over,
+	 * the plane rate is too high for the transport
+	 */
+	public synchronized long getOverruns() {
+		return overruns;
+	}
+}
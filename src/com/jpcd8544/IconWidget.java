@@ -0,0 +1,48 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : IconWidget.java
+
+	 Description :
+	     A page packed bitmap, see LCDBlit. Switching between icons (a battery
+	     level, a wifi strength...) repaints only when another bitmap is set.
+*/
+
+public class IconWidget extends Widget {
+
+	private byte bitmap[];
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param bitmap	width bytes per 8 rows, bit 0 on top, may be null for nothing
+	 */
+	public IconWidget(int x, int y, int width, int height, byte[] bitmap) {
+		super(x, y, width, height);
+		this.bitmap = bitmap;
+	}
+
+	public byte[] getBitmap() {
+		return bitmap;
+	}
+
+	/**
+	 * Shows another bitmap. The arrays are compared by reference, call
+	 * invalidate() after changing the contents of the current one.
+	 *
+	 * @param b
+	 */
+	public void setBitmap(byte[] b) {
+		if (b != bitmap) {
+			bitmap = b;
+			invalidate();
+		}
+	}
+
+	protected void paint(JPCD8544 lcd) {
+		if (bitmap != null)
+			lcd.LCDBlit(x, y, bitmap, null, width, height, FrameBuffer.ROP_COPY);
+	}
+}
@@ -0,0 +1,320 @@
+package com.jpcd8544;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+	 Name		 : ImageConverter.java
+
+	 Description :
+	     Turns grayscale or RGB pictures into the 1 bit, page packed layout of
+	     the display RAM: BufferedImages, raw gray bytes (one per pixel) or raw
+	     RGB bytes (three per pixel, R first).
+
+	     The picture is scaled to the target size (box filter when shrinking,
+	     nearest pixel when growing) and reduced to black and white with one of:
+	     - THRESHOLD, dark pixels are black,
+	     - ORDERED, a 4x4 Bayer matrix, stable from frame to frame (no
+	       crawling noise on video),
+	     - FLOYD_STEINBERG, error diffusion, the best looking on photos.
+
+	     THRESHOLD and ORDERED work on each 8 rows page independently, so the
+	     pages are converted in parallel by fork/join tasks. Floyd-Steinberg
+	     carries the error from row to row, it streams the rows in order: each
+	     row is scaled, dithered and packed before the next one is read.
+
+	     A converter keeps its scratch rows, so one frame costs no allocation
+	     (but the fork/join tasks).
+	     It's not thread safe, use one per thread (see ImageStreamConverter).
+*/
+
+public class ImageConverter {
+
+	// dithering modes
+	public static final int THRESHOLD = 0;
+	public static final int ORDERED = 1;
+	public static final int FLOYD_STEINBERG = 2;
+
+	// 4x4 Bayer matrix, thresholds spread over 0..255
+	private static final int BAYER[] = {
+		 8, 136,  40, 168,
+		200,  72, 232, 104,
+		 56, 184,  24, 152,
+		248, 120, 216,  88,
+	};
+
+	// source pixel formats
+	private static final int GRAY = 1;
+	private static final int RGB = 3;
+
+	private final int width;
+	private final int height;
+	private final ForkJoinPool pool;
+	private int mode = FLOYD_STEINBERG;
+	private int threshold = 128;
+
+	// the picture being converted
+	private byte src[];
+	private int srcFormat;
+	private int srcWidth, srcHeight;
+	private int argb[];
+
+	// source column span of each target column: [xStart[x], xStart[x+1])
+	private int xStart[];
+	private int xScaledFor = -1;
+
+	// per page scratch rows, so the pages can be converted at the same time
+	private final int luma[][];
+	// Floyd-Steinberg error of the current and next row, with a guard column on each side
+	private final int err0[], err1[];
+
+	/**
+	 * A converter to the LCD size, running its parallel modes in the common pool
+	 */
+	public ImageConverter() {
+		this(84, 48, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param width		of the result
+	 * @param height	of the result, a multiple of 8
+	 * @param pool		runs the page tasks of THRESHOLD and ORDERED, null to
+	 * 					convert the pages in the calling thread
+	 */
+	public ImageConverter(int width, int height, ForkJoinPool pool) {
+		this.width = width;
+		this.height = height;
+		this.pool = pool;
+		this.luma = new int[height / 8][width];
+		this.err0 = new int[width + 2];
+		this.err1 = new int[width + 2];
+	}
+
+	/**
+	 * @param m	THRESHOLD, ORDERED or FLOYD_STEINBERG
+	 */
+	public void setMode(int m) {
+		mode = m;
+	}
+
+	public int getMode() {
+		return mode;
+	}
+
+	/**
+	 * The gray level (0..255) below which THRESHOLD makes a pixel black, and
+	 * the middle point of the dithering modes
+	 *
+	 * @param t
+	 */
+	public void setThreshold(int t) {
+		threshold = t;
+	}
+
+	/**
+	 * Converts gray pixels, one byte each (0 black, 255 white), row by row
+	 *
+	 * @param gray
+	 * @param srcWidth
+	 * @param srcHeight
+	 * @param dst		width*height/8 bytes, page packed
+	 */
+	public void convertGray(byte[] gray, int srcWidth, int srcHeight, byte[] dst) {
+		convert(gray, GRAY, null, srcWidth, srcHeight, dst);
+	}
+
+	/**
+	 * Converts RGB pixels, three bytes each, row by row
+	 *
+	 * @param rgb
+	 * @param srcWidth
+	 * @param srcHeight
+	 * @param dst		width*height/8 bytes, page packed
+	 */
+	public void convertRgb(byte[] rgb, int srcWidth, int srcHeight, byte[] dst) {
+		convert(rgb, RGB, null, srcWidth, srcHeight, dst);
+	}
+
+	/**
+	 * Converts a BufferedImage. 8 bit gray images are read straight from their
+	 * raster, the others through getRGB.
+	 *
+	 * @param image
+	 * @param dst		width*height/8 bytes, page packed
+	 */
+	public void convert(BufferedImage image, byte[] dst) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		if (image.getType() == BufferedImage.TYPE_BYTE_GRAY
+				&& image.getRaster().getDataBuffer() instanceof DataBufferByte
+				&& image.getRaster().getParent() == null) {
+			convert(((DataBufferByte) image.getRaster().getDataBuffer()).getData(), GRAY, null, w, h, dst);
+			return;
+		}
+		if (argb == null || argb.length < w * h)
+			argb = new int[w * h];
+		image.getRGB(0, 0, w, h, argb, 0, w);
+		convert(null, 0, argb, w, h, dst);
+	}
+
+	private void convert(byte[] pixels, int format, int[] packed, int w, int h, byte[] dst) {
+		if (dst.length < width * height / 8)
+			throw new IllegalArgumentException("The destination needs " + width * height / 8 + " bytes");
+		src = pixels;
+		srcFormat = format;
+		argb = packed != null ? packed : argb;
+		srcWidth = w;
+		srcHeight = h;
+		if (xScaledFor != w)
+			scaleColumns(w);
+
+		if (mode == FLOYD_STEINBERG) {
+			diffuse(dst);
+		} else if (pool == null) {
+			quantizePages(dst, 0, height / 8);
+		} else {
+			pool.invoke(new PageTask(this, dst, 0, height / 8));
+		}
+		src = null;
+	}
+
+	// the source columns averaged into each target column
+	private void scaleColumns(int w) {
+		xStart = new int[width + 1];
+		for (int x = 0; x <= width; x++)
+			xStart[x] = (int) ((long) x * w / width);
+		xScaledFor = w;
+	}
+
+	// scales target row y into out, gray levels 0..255
+	private void scaleRow(int y, int[] out) {
+		int y0 = (int) ((long) y * srcHeight / height);
+		int y1 = Math.max(y0 + 1, (int) ((long) (y + 1) * srcHeight / height));
+
+		for (int x = 0; x < width; x++) {
+			int x0 = xStart[x];
+			int x1 = Math.max(x0 + 1, xStart[x + 1]);
+			if (x0 >= srcWidth)
+				x0 = srcWidth - 1;
+			if (x1 > srcWidth)
+				x1 = srcWidth;
+
+			int sum = 0;
+			for (int sy = y0; sy < y1; sy++)
+				for (int sx = x0; sx < x1; sx++)
+					sum += pixel(sx, sy);
+			out[x] = sum / ((y1 - y0) * (x1 - x0));
+		}
+	}
+
+	// the gray level of a source pixel
+	private int pixel(int x, int y) {
+		int i = y * srcWidth + x;
+		if (srcFormat == GRAY)
+			return src[i] & 0xFF;
+		int r, g, b;
+		if (srcFormat == RGB) {
+			r = src[i * 3] & 0xFF;
+			g = src[i * 3 + 1] & 0xFF;
+			b = src[i * 3 + 2] & 0xFF;
+		} else {
+			int c = argb[i];
+			r = (c >> 16) & 0xFF;
+			g = (c >> 8) & 0xFF;
+			b = c & 0xFF;
+		}
+		// ITU-R BT.601 weights, in 1/256
+		return (r * 77 + g * 150 + b * 29) >> 8;
+	}
+
+	// THRESHOLD or ORDERED on pages p0..p1-1
+	private void quantizePages(byte[] dst, int p0, int p1) {
+		for (int p = p0; p < p1; p++) {
+			int row[] = luma[p];
+			int base = p * width;
+			for (int x = 0; x < width; x++)
+				dst[base + x] = 0;
+
+			for (int bit = 0; bit < 8; bit++) {
+				int y = p * 8 + bit;
+				scaleRow(y, row);
+				for (int x = 0; x < width; x++) {
+					int t = (mode == ORDERED) ? BAYER[(y & 3) * 4 + (x & 3)] + threshold - 128 : threshold;
+					if (row[x] < t)
+						dst[base + x] |= 1 << bit;
+				}
+			}
+		}
+	}
+
+	// Floyd-Steinberg, one row after the other
+	private void diffuse(byte[] dst) {
+		int row[] = luma[0];
+		int cur[] = err0;
+		int next[] = err1;
+		int x;
+		for (x = 0; x < cur.length; x++)
+			cur[x] = next[x] = 0;
+
+		for (int y = 0; y < height; y++) {
+			scaleRow(y, row);
+			int base = (y >> 3) * width;
+			int bit = 1 << (y & 7);
+			if (bit == 1)
+				for (x = 0; x < width; x++)
+					dst[base + x] = 0;
+
+			// serpentine: left to right on even rows, right to left on odd ones
+			boolean ltr = (y & 1) == 0;
+			int dir = ltr ? 1 : -1;
+			for (int i = 0; i < width; i++) {
+				x = ltr ? i : width - 1 - i;
+				int v = row[x] + cur[x + 1] / 16;
+				int e;
+				if (v < threshold) {
+					dst[base + x] |= bit;
+					e = v;
+				} else {
+					e = v - 255;
+				}
+				cur[x + 1 + dir] += e * 7;
+				next[x + 1 - dir] += e * 3;
+				next[x + 1] += e * 5;
+				next[x + 1 + dir] += e;
+			}
+
+			int t[] = cur;
+			cur = next;
+			next = t;
+			for (x = 0; x < next.length; x++)
+				next[x] = 0;
+		}
+	}
+
+	// converts a range of pages, split in halves until each task has one
+	private static class PageTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final ImageConverter converter;
+		private final byte dst[];
+		private final int p0, p1;
+
+		PageTask(ImageConverter converter, byte[] dst, int p0, int p1) {
+			this.converter = converter;
+			this.dst = dst;
+			this.p0 = p0;
+			this.p1 = p1;
+		}
+
+		protected void compute() {
+			if (p1 - p0 <= 1) {
+				converter.quantizePages(dst, p0, p1);
+				return;
+			}
+			int mid = (p0 + p1) >>> 1;
+			invokeAll(new PageTask(converter, dst, p0, mid), new PageTask(converter, dst, mid, p1));
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package com.jpcd8544;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+	 Name		 : ImageStreamConverter.java
+
+	 Description :
+	     Converts a stream of pictures (camera frames, decoded video...) with
+	     several threads, and hands the results to a FrameSink in the order
+	     they were submitted, e.g. a DisplaySink to show them on the LCD.
+
+	     Each worker has its own ImageConverter, so with Floyd-Steinberg (which
+	     is sequential inside a frame) the cores work on different frames. The
+	     results go to a fixed set of frame buffers, at most maxInFlight frames
+	     are between submit and the sink: submit waits for a free buffer, offer
+	     drops the picture instead, which is what a live source wants.
+
+	     The pictures are read by the workers, don't change them before the
+	     frame reaches the sink.
+*/
+
+public class ImageStreamConverter {
+
+	private final FrameSink sink;
+	private final int width;
+	private final int height;
+	private final ExecutorService workers;
+	private final ArrayBlockingQueue<byte[]> free;
+
+	// converted frames waiting for their turn, by sequence % length
+	private final Job done[];
+	private long nextSequence;
+	private long deliverSequence;
+	private boolean delivering;
+
+	private volatile int mode = ImageConverter.FLOYD_STEINBERG;
+	private volatile int threshold = 128;
+	private boolean closed;
+
+	private long submitted;
+	private long dropped;
+	private long delivered;
+	private long failures;
+	private volatile Exception lastError;
+
+	private final ThreadLocal<ImageConverter> converter = new ThreadLocal<ImageConverter>() {
+		protected ImageConverter initialValue() {
+			// the parallel modes run their pages in the worker itself
+			return new ImageConverter(width, height, null);
+		}
+	};
+
+	/**
+	 * @param sink			gets the frames in submission order
+	 * @param threads		converting at the same time
+	 * @param maxInFlight	frames submitted but not yet written to the sink
+	 */
+	public ImageStreamConverter(FrameSink sink, int threads, int maxInFlight) {
+		this(sink, 84, 48, threads, maxInFlight);
+	}
+
+	public ImageStreamConverter(FrameSink sink, int width, int height, int threads, int maxInFlight) {
+		this.sink = sink;
+		this.width = width;
+		this.height = height;
+		this.done = new Job[maxInFlight];
+		this.free = new ArrayBlockingQueue<byte[]>(maxInFlight);
+		for (int i = 0; i < maxInFlight; i++)
+			free.add(new byte[width * height / 8]);
+		this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "PCD8544 convert " + (++count));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * The dithering of the next frames, see ImageConverter.setMode
+	 *
+	 * @param m
+	 */
+	public void setMode(int m) {
+		mode = m;
+	}
+
+	public void setThreshold(int t) {
+		threshold = t;
+	}
+
+	/**
+	 * Queues a picture, waiting for a free frame buffer if maxInFlight frames
+	 * are already on their way
+	 *
+	 * @param image
+	 */
+	public void submit(BufferedImage image) throws InterruptedException {
+		queue(new Job(image, null, 0, image.getWidth(), image.getHeight()), free.take());
+	}
+
+	/**
+	 * Queues gray (one byte per pixel) or RGB (three bytes) pixels, waiting
+	 * for a free frame buffer
+	 *
+	 * @param pixels
+	 * @param bytesPerPixel	1 or 3
+	 * @param w
+	 * @param h
+	 */
+	public void submit(byte[] pixels, int bytesPerPixel, int w, int h) throws InterruptedException {
+		queue(new Job(null, pixels, bytesPerPixel, w, h), free.take());
+	}
+
+	/**
+	 * Queues a picture if a frame buffer is free, otherwise drops it
+	 *
+	 * @param image
+	 * @return false if the picture was dropped
+	 */
+	public boolean offer(BufferedImage image) {
+		return offer(new Job(image, null, 0, image.getWidth(), image.getHeight()));
+	}
+
+	/**
+	 * Queues gray or RGB pixels if a frame buffer is free, otherwise drops them
+	 *
+	 * @return false if the pixels were dropped
+	 */
+	public boolean offer(byte[] pixels, int bytesPerPixel, int w, int h) {
+		return offer(new Job(null, pixels, bytesPerPixel, w, h));
+	}
+
+	private boolean offer(Job job) {
+		byte out[] = free.poll();
+		if (out == null) {
+			synchronized (this) {
+				dropped++;
+			}
+			return false;
+		}
+		queue(job, out);
+		return true;
+	}
+
+	private void queue(Job job, byte[] out) {
+		synchronized (this) {
+			if (closed) {
+				free.add(out);
+				throw new IllegalStateException("The converter is closed");
+			}
+			job.out = out;
+			job.mode = mode;
+			job.threshold = threshold;
+			job.sequence = nextSequence++;
+			submitted++;
+		}
+		workers.execute(job);
+	}
+
+	// stores a converted frame, and if no other worker is at it, writes the
+	// frames that are next in order. The others go back to converting.
+	private void deliver(Job finished) {
+		synchronized (this) {
+			done[(int) (finished.sequence % done.length)] = finished;
+			if (delivering)
+				return;
+			delivering = true;
+		}
+		while (true) {
+			Job job;
+			synchronized (this) {
+				int slot = (int) (deliverSequence % done.length);
+				job = done[slot];
+				if (job == null) {
+					delivering = false;
+					return;
+				}
+				done[slot] = null;
+				deliverSequence++;
+			}
+			if (job.error == null) {
+				try {
+					sink.write(job.out, width, height, job.sequence + 1);
+				} catch (IOException e) {
+					job.error = e;
+				} catch (RuntimeException e) {
+					job.error = e;
+				}
+			}
+			synchronized (this) {
+				if (job.error != null) {
+					failures++;
+					lastError = job.error;
+				} else {
+					delivered++;
+				}
+			}
+			free.add(job.out);
+		}
+	}
+
+	/**
+	 * Pictures queued by submit or offer
+	 */
+	public synchronized long getFramesSubmitted() {
+		return submitted;
+	}
+
+	/**
+	 * Pictures offer dropped for lack of a free frame buffer
+	 */
+	public synchronized long getFramesDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Frames written to the sink
+	 */
+	public synchronized long getFramesDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * Frames that failed to convert or to be written
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * The last conversion or sink error, or null
+	 */
+	public Exception getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Converts and delivers the queued pictures, then closes the sink
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		workers.shutdown();
+		try {
+			workers.awaitTermination(10, TimeUnit.SECONDS);
+			sink.close();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			throw new LCDException("Can't close the converter sink", e);
+		}
+	}
+
+	// one picture on its way to the sink
+	private class Job implements Runnable {
+		private final BufferedImage image;
+		private final byte pixels[];
+		private final int bytesPerPixel;
+		private final int w, h;
+		private byte out[];
+		private int mode, threshold;
+		private long sequence;
+		private Exception error;
+
+		Job(BufferedImage image, byte[] pixels, int bytesPerPixel, int w, int h) {
+			this.image = image;
+			this.pixels = pixels;
+			this.bytesPerPixel = bytesPerPixel;
+			this.w = w;
+			this.h = h;
+		}
+
+		public void run() {
+			ImageConverter c = converter.get();
+			c.setMode(mode);
+			c.setThreshold(threshold);
+			try {
+				if (image != null)
+					c.convert(image, out);
+				else if (bytesPerPixel == 3)
+					c.convertRgb(pixels, w, h, out);
+				else
+					c.convertGray(pixels, w, h, out);
+			} catch (RuntimeException e) {
+				// still delivered in turn, or the frames after it would wait forever
+				error = e;
+			}
+			deliver(this);
+		}
+	}
+}
@@ -1,5 +1,14 @@
 package com.jpcd8544;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 import com.pi4j.io.gpio.GpioController;
 import com.pi4j.io.gpio.GpioFactory;
 import com.pi4j.io.gpio.GpioPin;
@@ -82,22 +91,21 @@ public class JPCD8544 {
 	public final int PCD8544_SETVOP =0x80;
 
 
-	 // calibrate clock constants
-	private final int CLKCONST_1  =8000;
-	private final int CLKCONST_2  =400;  // 400 is a good tested value for Raspberry Pi
-
 	// keywords
 	private final int LSBFIRST  =0;
 	private final int MSBFIRST  =1;
 
 	
 	// LCD port variables
-	private int  cursor_x, cursor_y, textsize, textcolor;
 	private GpioPinDigitalOutput _din, _sclk, _dc, _rst, _cs;
+	private MeteredTransport transport;
+
+	// runtime counters, see LCDGetMetrics
+	private final LCDMetrics metrics = new LCDMetrics();
 
 	
-	// font bitmap
-	private int font[] = {
+	// font bitmap, shared by all the LCDs
+	private static final int font[] = {
 			0x00, 0x00, 0x00, 0x00, 0x00,
 			0x3E, 0x5B, 0x4F, 0x5B, 0x3E,
 			0x3E, 0x6B, 0x4F, 0x6B, 0x3E,
@@ -355,8 +363,57 @@ public class JPCD8544 {
 			0x00, 0x00, 0x00, 0x00, 0x00,
 	};
 
-	// the memory buffer for the LCD
-	private int  pcd8544_buffer[] = new int[LCDWIDTH * LCDHEIGHT / 8];
+	// the font, compiled to ready to copy cells for each text size and color
+	private static final GlyphCache glyphs = new GlyphCache(font, 5);
+
+	// the same font for LCDDrawString with a font
+	private static final LCDFont defaultFont = LCDFont.fromColumns("5x7", font, 5, 6);
+
+	// the memory buffer for the LCD, packed 8 rows per byte like the LCD RAM
+	private final FrameBuffer frame = new FrameBuffer(LCDWIDTH, LCDHEIGHT);
+	private byte pcd8544_buffer[] = frame.getBytes();
+
+	// the parts of the memory buffer not yet sent to the LCD
+	private final DamageTracker damage = new DamageTracker(LCDWIDTH, LCDHEIGHT);
+
+	// double buffering: the flusher thread sends front, drawing goes to pcd8544_buffer.
+	// Volatile for LCDDisplay, which checks it without the monitor.
+	private volatile ExecutorService flusher;
+	// runs the frame listeners, apart from the flusher so they can publish frames
+	private ExecutorService notifier;
+	private FrameBuffer front;
+	private DamageTracker frontDamage;
+	private Future<Long> pendingFrame;
+	private long frameNumber;
+	private final List<FrameListener> frameListeners = new CopyOnWriteArrayList<FrameListener>();
+
+	// what the LCD RAM holds, so only the changed bytes are sent
+	private final FrameDiffer differ = new FrameDiffer(LCDWIDTH, LCDHEIGHT);
+	private boolean shadowDiff = true;
+
+	// copies of the displayed frames, for viewing them elsewhere
+	private final List<FrameMirror> mirrors = new CopyOnWriteArrayList<FrameMirror>();
+
+	// serializes the use of the transport between the caller and the flusher thread
+	private final Object wire = new Object();
+
+	// one lock per page of the memory buffer, taken by the drawing primitives
+	private final PageLocks locks = new PageLocks(LCDHEIGHT);
+
+	// the text cursor and attributes, one set per drawing thread
+	private final ThreadLocal<DrawContext> context = new ThreadLocal<DrawContext>() {
+		protected DrawContext initialValue() {
+			return new DrawContext();
+		}
+	};
+
+	// LCDDisplay copies the memory buffer here and sends the copy, so the
+	// drawing threads only wait for the copy of their own page
+	private final FrameBuffer shot = new FrameBuffer(LCDWIDTH, LCDHEIGHT);
+	private final DamageTracker shotDamage = new DamageTracker(LCDWIDTH, LCDHEIGHT);
+
+	// pi_logo packed into a frame buffer on first use
+	private FrameBuffer logo;
 
 	// Le: get the bitmap assistance here! : http://en.radzio.dxp.pl/bitmap_converter/
 	// Andre: or here! : http://www.henningkarlsen.com/electronics/t_imageconverter_mono.php
@@ -395,58 +452,82 @@ public class JPCD8544 {
 	0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 
 	};
 
-	private void swap(Integer a, Integer b) {
-		Integer t = a;
-		a = b;
-		b = t;
-		
-	}
-	
-	private int abs (int a) {
-		return Math.abs(a);
-	} 
-	
 	private int _BV (int bit) {
 		return (0x1 << (bit));
 	}
 	
 	
-	// reduces how much is refreshed, which speeds it up!
-	// originally derived from Steve Evans/JCW's mod but cleaned up and optimized
-	//#define enablePartialUpdate
-	private void mySetPixel(int x, int y, int color){
-		//Avoid negative values
-		x = Math.abs(x);
-		y = Math.abs(y);
-		
-		if ((x >= LCDWIDTH) || (y >= LCDHEIGHT))
-			return;
-		// x is which column
-		if (color == BLACK)
-			pcd8544_buffer[x+ (y/8)*LCDWIDTH] |= _BV(y%8);
-		else
-			pcd8544_buffer[x+ (y/8)*LCDWIDTH] &= ~_BV(y%8);
-	}
-
-	
 	public void LCDShowLogo()	{
-		int i;
-		for (i = 0; i < LCDWIDTH * LCDHEIGHT / 8; i++  )
-		{
-			pcd8544_buffer[i] = pi_logo[i];
+		if (logo == null) {
+			logo = new FrameBuffer(LCDWIDTH, LCDHEIGHT);
+			logo.copyFrom(pi_logo);
+		}
+		int pages = locks.lockAll();
+		try {
+			frame.copyFrom(logo);
+			updateBoundingBox(0, 0, LCDWIDTH-1, LCDHEIGHT-1);
+		} finally {
+			locks.unlock(pages);
 		}
 		LCDDisplay();
 	}
 
+	/**
+	 * Plays a frame sequence file (see FrameSequenceWriter) from a background
+	 * thread, e.g. a boot animation
+	 *
+	 * @param path
+	 * @param loop	start over after the last frame, until the player is stopped
+	 * @return the player, to stop it or wait for the end
+	 */
+	public FrameSequencePlayer LCDPlaySequence(String path, boolean loop) {
+		FrameSequencePlayer player = new FrameSequencePlayer(this, new FrameSequence(path));
+		player.play(loop);
+		return player;
+	}
 
+	/**
+	 * Replaces the memory buffer with a whole frame, e.g. from ImageConverter.
+	 * Only the columns that differ from the current content are marked, so a
+	 * video frame with a still background sends little more than what moved.
+	 *
+	 * @param src	LCDWIDTH*LCDHEIGHT/8 bytes, packed like the display RAM
+	 */
+	public void LCDDrawFrame(byte[] src) {
+		metrics.draw(LCDMetrics.DRAW_BITMAP);
+		byte dst[] = frame.getBytes();
+		int pages = locks.lockAll();
+		try {
+			for (int p = 0; p < LCDHEIGHT / 8; p++) {
+				int base = p * LCDWIDTH;
+				int x0 = 0;
+				int x1 = LCDWIDTH - 1;
+				while (x0 <= x1 && dst[base + x0] == src[base + x0])
+					x0++;
+				if (x0 > x1)
+					continue;
+				while (dst[base + x1] == src[base + x1])
+					x1--;
+				System.arraycopy(src, base + x0, dst, base + x0, x1 - x0 + 1);
+				updateBoundingBox(x0, p * 8, x1, p * 8 + 7);
+			}
+		} finally {
+			locks.unlock(pages);
+		}
+	}
+
+
+	/**
+	 * Marks a region as changed, so the next LCDDisplay sends it to the LCD.
+	 * The damage is kept per page (8 rows), each page with its own column range.
+	 *
+	 * @param xmin
+	 * @param ymin
+	 * @param xmax
+	 * @param ymax
+	 */
 	public void updateBoundingBox(int xmin, int ymin, int xmax, int ymax) {
-	//FIXME For the 0.1 port version, Ill ignore the partialUpdate
-//		#ifdef enablePartialUpdate
-//		if (xmin < xUpdateMin) xUpdateMin = xmin;
-//		if (xmax > xUpdateMax) xUpdateMax = xmax;
-//		if (ymin < yUpdateMin) yUpdateMin = ymin;
-//		if (ymax > yUpdateMax) yUpdateMax = ymax;
-//		#endif
+		damage.mark(xmin, ymin, xmax, ymax);
 	}
 
 	
@@ -487,12 +568,7 @@ public class JPCD8544 {
 		_din = dinPin;
 		_sclk = sclkPin;
 		_dc = dcPin;
-		_rst = rstPin;
 		_cs = csPin;
-		
-		cursor_x = cursor_y = 0;
-		textsize = 1;
-		textcolor = BLACK;
 
 		// set pin directions
 //		pinMode(_din, OUTPUT);
@@ -501,13 +577,37 @@ public class JPCD8544 {
 //		pinMode(_rst, OUTPUT);
 //		pinMode(_cs, OUTPUT);
 
-		// toggle RST low to reset; CS low so it'll listen to us
-		//if (_cs > 0)
-			digitalWrite(_cs, LOW);
+		// CS is pulled low by the transport while it talks to the LCD and stays
+		// low for a whole frame
+		LCDInit(new BitBangTransport(dinPin, sclkPin, dcPin, csPin), rstPin, contrast);
+	}
+
+	/**
+	 * Initialize the PCD8544 LCD behind the given transport, e.g. a SpiDevTransport
+	 * 
+	 * @param lcdTransport
+	 * @param rstPin		may be null if the reset line is handled elsewhere
+	 * @param contrast
+	 */
+	public void LCDInit(LCDTransport lcdTransport, GpioPinDigitalOutput rstPin, int contrast)	{
+
+		if (lcdTransport instanceof BitBangTransport)
+			((BitBangTransport) lcdTransport).setMetrics(metrics);
+		if (lcdTransport instanceof GpioMemTransport)
+			((GpioMemTransport) lcdTransport).setMetrics(metrics);
+		transport = new MeteredTransport(lcdTransport, metrics);
+		_rst = rstPin;
+
+		context.set(new DrawContext());
+
+		// toggle RST low to reset
+		if (_rst != null) {
+			digitalWrite(_rst, LOW);
+			delayMs(500);
+			digitalWrite(_rst, HIGH);
+		}
 
-		digitalWrite(_rst, LOW);
-		delayMs(500);
-		digitalWrite(_rst, HIGH);
+		transport.begin();
 
 		// get into the EXTENDED mode!
 		LCDCommand(PCD8544_FUNCTIONSET | PCD8544_EXTENDEDINSTRUCTION );
@@ -527,28 +627,116 @@ public class JPCD8544 {
 		// Set display to Normal
 		LCDCommand(PCD8544_DISPLAYCONTROL | PCD8544_DISPLAYNORMAL);
 
-		// set up a bounding box for screen updates
+		transport.end();
+
+		// set up a bounding box for screen updates, the LCD RAM is garbage after a reset
+		differ.invalidate();
 		updateBoundingBox(0, 0, LCDWIDTH-1, LCDHEIGHT-1);
 
 	}
 
+	/**
+	 * Draws the set pixels of a page packed bitmap (w bytes per 8 rows, bit 0
+	 * on top, one value per int) in color. The other pixels are left alone.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param bitmap
+	 * @param w
+	 * @param h
+	 * @param color
+	 */
 	public void LCDDrawBitmap(int x, int y,int[] bitmap, int w, int h,int color)
 	{
-		int j,i;
-		for ( j=0; j<h; j++) {
-			for ( i=0; i<w; i++ ) {
-				if ((bitmap[i + (j/8)*w] & _BV(j%8))==1){
-					mySetPixel(x+i, y+j, color);
-				}
-			}
+		DrawContext ctx = context.get();
+		int n = w * ((h + 7) / 8);
+		if (ctx.bitmapScratch.length < n)
+			ctx.bitmapScratch = new byte[n];
+		for (int i = 0; i < n; i++)
+			ctx.bitmapScratch[i] = (byte) bitmap[i];
+		LCDDrawBitmap(x, y, ctx.bitmapScratch, w, h, color);
+	}
+
+	/**
+	 * Draws the set pixels of a page packed bitmap (w bytes per 8 rows, bit 0
+	 * on top) in color. The other pixels are left alone.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param bitmap
+	 * @param w
+	 * @param h
+	 * @param color
+	 */
+	public void LCDDrawBitmap(int x, int y, byte[] bitmap, int w, int h, int color)
+	{
+		LCDBlit(x, y, bitmap, null, w, h, color == BLACK ? FrameBuffer.ROP_OR : FrameBuffer.ROP_CLEAR);
+	}
+
+	/**
+	 * Moves the whole screen by dx columns and dy rows, see LCDScrollRegion
+	 * 
+	 * @param dx	positive to the right
+	 * @param dy	positive down
+	 * @param color	of the exposed strips
+	 */
+	public void LCDScroll(int dx, int dy, int color) {
+		LCDScrollRegion(0, 0, LCDWIDTH, LCDHEIGHT, dx, dy, color);
+	}
+
+	/**
+	 * Moves the contents of the w x h region at (x, y) by dx columns and dy
+	 * rows and fills the exposed strips with color, e.g. a ticker line moved
+	 * left by one pixel before its new column is drawn. Only the region is
+	 * refreshed.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param dx	positive to the right
+	 * @param dy	positive down
+	 * @param color	of the exposed strips
+	 */
+	public void LCDScrollRegion(int x, int y, int w, int h, int dx, int dy, int color) {
+		metrics.draw(LCDMetrics.SCROLL);
+		int pages = locks.lockRows(Math.max(y, 0), y+h-1);
+		try {
+			frame.scroll(x, y, w, h, dx, dy, color);
+			updateBoundingBox(x, y, x+w-1, y+h-1);
+		} finally {
+			locks.unlock(pages);
+		}
+	}
+
+	/**
+	 * Combines a page packed bitmap with the screen, see FrameBuffer.blit
+	 * 
+	 * @param x
+	 * @param y
+	 * @param bitmap	w bytes per 8 rows, bit 0 on top
+	 * @param mask		same layout, the pixels of the bitmap to draw, null for all of them
+	 * @param w
+	 * @param h
+	 * @param rop		FrameBuffer.ROP_COPY, ROP_OR, ROP_AND, ROP_XOR or ROP_CLEAR
+	 */
+	public void LCDBlit(int x, int y, byte[] bitmap, byte[] mask, int w, int h, int rop)
+	{
+		metrics.draw(LCDMetrics.DRAW_BITMAP);
+		int pages = locks.lockRows(Math.max(y, 0), y+h-1);
+		try {
+			frame.blit(x, y, bitmap, 0, w, h, rop, mask, 0);
+			updateBoundingBox(x, y, x+w-1, y+h-1);
+		} finally {
+			locks.unlock(pages);
 		}
-		updateBoundingBox(x, y, x+w, y+h);
 	}
 
 	
 	public void LCDDrawString(int x, int y, String str) {
-		cursor_x = x;
-		cursor_y = y;
+		DrawContext ctx = context.get();
+		ctx.cursorX = x;
+		ctx.cursorY = y;
 		for (int i=0 ; i<str.length(); i++){
 			LCDWrite((byte)str.charAt(i));	
 		}
@@ -556,176 +744,191 @@ public class JPCD8544 {
 		
 	}
 
+	/**
+	 * Draws str at (x, y) with font, in the text color of the calling thread.
+	 * There's no wrapping and the cursor doesn't move. The string is rendered
+	 * once into a strip kept in the shared TextStripCache, so drawing the same
+	 * label again is one blit.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param str
+	 * @param font	e.g. LCDFont.loadBdf(file), or LCDGetDefaultFont()
+	 * @return the width of the drawn string
+	 */
+	public int LCDDrawString(int x, int y, String str, LCDFont font) {
+		TextStrip strip = TextStripCache.getShared().get(str, font, context.get().textColor == BLACK);
+		LCDBlit(x, y, strip.getBytes(), null, strip.getWidth(), strip.getHeight(), FrameBuffer.ROP_COPY);
+		return strip.getWidth();
+	}
+
+	/**
+	 * The classic 5x7 font as an LCDFont
+	 */
+	public LCDFont LCDGetDefaultFont() {
+		return defaultFont;
+	}
+
 	public void LCDDrawChar(int x, int y, char c) {
+		metrics.draw(LCDMetrics.DRAW_CHAR);
+		DrawContext ctx = context.get();
+		int textsize = ctx.textSize;
 		if (y >= LCDHEIGHT) return;
-		if ((x+5) >= LCDWIDTH) return;
-		int i,j;
-		for ( i =0; i<5; i++ ) {
-			int d = font[(c*5)+i];
-			for (j = 0; j<8; j++)
-			{
-				if ((d & _BV(j)) == Math.pow(2, j)){
-					mySetPixel(x+i, y+j, (textcolor == BLACK)?1:0);
-				}else {
-					mySetPixel(x+i, y+j, !(textcolor == BLACK)?1:0);
-				}
-			}
-		}
+		if ((x+5*textsize) >= LCDWIDTH) return;
 
-		for ( j = 0; j<8; j++)
-		{
-			mySetPixel(x+5, y+j, !(textcolor == BLACK)?1:0);
+		// the cell is already in the page layout, with textcolor and textsize applied
+		int w = glyphs.getCellWidth(textsize);
+		byte cells[] = glyphs.getCells(textsize, ctx.textColor == BLACK);
+		int pages = locks.lockRows(Math.max(y, 0), y + 8*textsize - 1);
+		try {
+			frame.copyColumns(x, y, cells, glyphs.getCellOffset(c, textsize), w, textsize);
+			updateBoundingBox(x, y, x + w - 1, y + 8*textsize - 1);
+		} finally {
+			locks.unlock(pages);
 		}
-		updateBoundingBox(x, y, x+5, y + 8);
 	}
 
 	public void LCDWrite(int c) {
+		DrawContext ctx = context.get();
+		int textsize = ctx.textSize;
 		if (c == '\n')	{
-			cursor_y += textsize*8;
-			cursor_x = 0;
+			ctx.cursorY += textsize*8;
+			ctx.cursorX = 0;
 		} else if (c == '\r'){
 			// skip em
 		} else	{
-			LCDDrawChar(cursor_x, cursor_y, (char)c);
-			cursor_x += textsize*6;
-			if (cursor_x >= (LCDWIDTH-5))
+			LCDDrawChar(ctx.cursorX, ctx.cursorY, (char)c);
+			ctx.cursorX += textsize*6;
+			if (ctx.cursorX >= (LCDWIDTH-5*textsize))
 			{
-				cursor_x = 0;
-				cursor_y+=8;
+				ctx.cursorX = 0;
+				ctx.cursorY += textsize*8;
 			}
-			if (cursor_y >= LCDHEIGHT)
-				cursor_y = 0;
+			if (ctx.cursorY >= LCDHEIGHT)
+				ctx.cursorY = 0;
 		}
 	}
 
+	/**
+	 * Moves the text cursor of the calling thread
+	 * 
+	 * @param x
+	 * @param y
+	 */
 	public void LCDSetCursor(int x, int y)	{
-		cursor_x = x;
-		cursor_y = y;
+		DrawContext ctx = context.get();
+		ctx.cursorX = x;
+		ctx.cursorY = y;
 	}
 
-	// bresenham's algorithm - thx wikpedia
-	public void LCDDrawLine(int x0, int y0, int x1, int y1, int color)	{
-		boolean steep = abs(y1 - y0) > abs(x1 - x0);
-		if (steep)	{
-			swap(x0, y0);
-			swap(x1, y1);
-		}
-
-		if (x0 > x1){
-			swap(x0, x1);
-			swap(y0, y1);
-		}
-
-		// much faster to put the test here, since we've already sorted the points
-		updateBoundingBox(x0, y0, x1, y1);
+	/**
+	 * Sets the text scale, 1 for the plain 5x7 font, 2 for 10x14 and so on
+	 * 
+	 * @param s
+	 */
+	public void LCDSetTextSize(int s)	{
+		// the cells are scaled in 64 bit columns, 8 is as far as they go
+		context.get().textSize = (s < 1) ? 1 : (s > 8) ? 8 : s;
+	}
 
-		int dx, dy;
-		dx = x1 - x0;
-		dy = abs(y1 - y0);
+	/**
+	 * Sets the text color, BLACK (on white) or WHITE (on black)
+	 * 
+	 * @param c
+	 */
+	public void LCDSetTextColor(int c)	{
+		context.get().textColor = c;
+	}
 
-		int err = dx / 2;
-		int ystep;
+	public int LCDGetTextSize() {
+		return context.get().textSize;
+	}
 
-		if (y0 < y1){
-			ystep = 1;
-		} else	{
-			ystep = -1;
-		}
+	public int LCDGetTextColor() {
+		return context.get().textColor;
+	}
 
-		for (; x0<=x1; x0++) {
-			if (steep)	{
-				mySetPixel(y0, x0, color);
-			}else {
-				mySetPixel(x0, y0, color);
-			}
-			err -= dy;
-			if (err < 0){
-				y0 += ystep;
-				err += dx;
-			}
+	/**
+	 * Draws a line, both ends included. Horizontal and vertical lines are
+	 * spans, the others are clipped once and walked byte by byte, see
+	 * FrameBuffer.drawLine.
+	 * 
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @param color
+	 */
+	public void LCDDrawLine(int x0, int y0, int x1, int y1, int color)	{
+		metrics.draw(LCDMetrics.DRAW_LINE);
+		int pages = locks.lockRows(y0, y1);
+		try {
+			frame.drawLine(x0, y0, x1, y1, color == BLACK ? 1 : 0);
+			updateBoundingBox(x0, y0, x1, y1);
+		} finally {
+			locks.unlock(pages);
 		}
 	}
 
 	// filled rectangle
 	public void LCDFillRect(int x, int y, int w, int h,  int color) {
-		// stupidest version - just pixels - but fast with internal buffer!
-		int i,j;
-		for ( i=x; i<x+w; i++){
-			for ( j=y; j<y+h; j++){
-				mySetPixel(i, j, color);
-			}
+		metrics.draw(LCDMetrics.FILL_RECT);
+		int pages = locks.lockRows(y, y+h);
+		try {
+			// whole page bytes at a time, see FrameBuffer.fillRect
+			frame.fillRect(x, y, w, h, color == BLACK ? 1 : 0);
+			updateBoundingBox(x, y, x+w, y+h);
+		} finally {
+			locks.unlock(pages);
 		}
-		updateBoundingBox(x, y, x+w, y+h);
 	}
 
 	// draw a rectangle
 	public void LCDDrawRect(int x, int y, int w, int h, int color)	{
-		// stupidest version - just pixels - but fast with internal buffer!
-		int i;
-		for ( i=x; i<x+w; i++) {
-			mySetPixel(i, y, color);
-			mySetPixel(i, y+h-1, color);
-		}
-		for ( i=y; i<y+h; i++) {
-			mySetPixel(x, i, color);
-			mySetPixel(x+w-1, i, color);
+		metrics.draw(LCDMetrics.DRAW_RECT);
+		int pages = locks.lockRows(y, y+h-1);
+		try {
+			// four spans
+			frame.drawRect(x, y, w, h, color == BLACK ? 1 : 0);
+			updateBoundingBox(x, y, x+w-1, y+h-1);
+		} finally {
+			locks.unlock(pages);
 		}
-
-		updateBoundingBox(x, y, x+w, y+h);
 	}
 
 	// draw a circle outline
 	public void LCDDrawCircle(int x0, int y0, int r, int color)	{
-		updateBoundingBox(x0-r, y0-r, x0+r, y0+r);
-
-		int f = 1 - r;
-		int ddF_x = 1;
-		int ddF_y = -2 * r;
-		int x = 0;
-		int y = r;
-
-		mySetPixel(x0, y0+r, color);
-		mySetPixel(x0, y0-r, color);
-		mySetPixel(x0+r, y0, color);
-		mySetPixel(x0-r, y0, color);
-
-		while (x<y)
-		{
-			if (f >= 0)
-			{
-				y--;
-				ddF_y += 2;
-				f += ddF_y;
-			}
-			x++;
-			ddF_x += 2;
-			f += ddF_x;
-
-			mySetPixel(x0 + x, y0 + y, color);
-			mySetPixel(x0 - x, y0 + y, color);
-			mySetPixel(x0 + x, y0 - y, color);
-			mySetPixel(x0 - x, y0 - y, color);
-
-			mySetPixel(x0 + y, y0 + x, color);
-			mySetPixel(x0 - y, y0 + x, color);
-			mySetPixel(x0 + y, y0 - x, color);
-			mySetPixel(x0 - y, y0 - x, color);
-
+		metrics.draw(LCDMetrics.DRAW_CIRCLE);
+		int pages = locks.lockRows(y0-r, y0+r);
+		try {
+			frame.drawCircle(x0, y0, r, color == BLACK ? 1 : 0);
+			updateBoundingBox(x0-r, y0-r, x0+r, y0+r);
+		} finally {
+			locks.unlock(pages);
 		}
 	}
 
 	public void LCDFillCircle(int x0, int y0, int r, int color)	{
+		metrics.draw(LCDMetrics.FILL_CIRCLE);
+		int pages = locks.lockRows(y0-r, y0+r);
+		try {
+			fillCircle(x0, y0, r, color);
+		} finally {
+			locks.unlock(pages);
+		}
+	}
+
+	private void fillCircle(int x0, int y0, int r, int color)	{
 		updateBoundingBox(x0-r, y0-r, x0+r, y0+r);
 		int f = 1 - r;
 		int ddF_x = 1;
 		int ddF_y = -2 * r;
 		int x = 0;
 		int y = r;
-		int i;
+		int c = (color == BLACK) ? 1 : 0;
 
-		for (i=y0-r; i<=y0+r; i++)	{
-			mySetPixel(x0, i, color);
-		}
+		// one vertical span per column, a few bytes each
+		frame.fillVSpan(x0, y0-r, y0+r, c);
 
 		while (x<y)	{
 			if (f >= 0)	{
@@ -737,29 +940,47 @@ public class JPCD8544 {
 			ddF_x += 2;
 			f += ddF_x;
 
-			for ( i=y0-y; i<=y0+y; i++)	{
-				mySetPixel(x0+x, i, color);
-				mySetPixel(x0-x, i, color);
-			}
-			for ( i=y0-x; i<=y0+x; i++)	{
-				mySetPixel(x0+y, i, color);
-				mySetPixel(x0-y, i, color);
-			}
+			frame.fillVSpan(x0+x, y0-y, y0+y, c);
+			frame.fillVSpan(x0-x, y0-y, y0+y, c);
+			frame.fillVSpan(x0+y, y0-x, y0+x, c);
+			frame.fillVSpan(x0-y, y0-x, y0+x, c);
 		}
 	}
 
 	// the most basic function, set a single pixel
 	public void LCDSetPixel(int x, int y, int color)
 	{
-		if ((x >= LCDWIDTH) || (y >= LCDHEIGHT))
+		metrics.draw(LCDMetrics.SET_PIXEL);
+		if ((x < 0) || (y < 0) || (x >= LCDWIDTH) || (y >= LCDHEIGHT))
 			return;
 
-		// x is which column
-		if (color == 1)
-			pcd8544_buffer[x+ (y/8)*LCDWIDTH] |= _BV(y%8);
-		else
-			pcd8544_buffer[x+ (y/8)*LCDWIDTH] &= ~_BV(y%8);
-		updateBoundingBox(x,y,x,y);
+		int pages = locks.lockRows(y, y);
+		try {
+			// x is which column
+			if (color == 1)
+				pcd8544_buffer[x+ (y/8)*LCDWIDTH] |= _BV(y%8);
+			else
+				pcd8544_buffer[x+ (y/8)*LCDWIDTH] &= ~_BV(y%8);
+			updateBoundingBox(x,y,x,y);
+		} finally {
+			locks.unlock(pages);
+		}
+	}
+
+	/**
+	 * The memory buffer for the LCD, for bulk compositing. Mark what you change
+	 * with updateBoundingBox before calling LCDDisplay, and if other threads
+	 * draw at the same time, hold the page locks of the rows you change.
+	 */
+	public FrameBuffer LCDGetFrameBuffer() {
+		return frame;
+	}
+
+	/**
+	 * The page locks of the memory buffer, see LCDGetFrameBuffer
+	 */
+	public PageLocks LCDGetPageLocks() {
+		return locks;
 	}
 
 	// the most basic function, get a single pixel
@@ -770,18 +991,27 @@ public class JPCD8544 {
 		return (pcd8544_buffer[x+ (y/8)*LCDWIDTH] >> (7-(y%8))) & 0x1;
 	}
 
+	/**
+	 * Sends one data byte, the same as LCDData: through the transport, so it
+	 * works on any of them and keeps D/C and the pin state of the transport
+	 * right
+	 *
+	 * @param c
+	 */
 	public void LCDSpiWrite(long c)	{
-		shiftOut(_din, _sclk, MSBFIRST, c);
+		LCDData((int) (c & 0xFF));
 	}
 
 	public void LCDCommand(int c)	{
-		digitalWrite( _dc, LOW);
-		LCDSpiWrite(c);
+		synchronized (wire) {
+			transport.command(c);
+		}
 	}
 
 	public void LCDData(int c)	{
-		digitalWrite(_dc, HIGH);
-		LCDSpiWrite(c);
+		synchronized (wire) {
+			transport.data(c);
+		}
 	}
 
 	public void LCDSetContrast(int val) {
@@ -793,133 +1023,355 @@ public class JPCD8544 {
 		LCDCommand(PCD8544_FUNCTIONSET);
 	}
 
+	/**
+	 * Sends the changed parts of the memory buffer to the LCD. Only the dirty
+	 * pages are addressed, and only their dirty column range is transmitted.
+	 * 
+	 * In double buffered mode the frame is published with LCDSwapBuffers and
+	 * sent by the flusher thread, so this returns without waiting for the LCD.
+	 */
 	public void LCDDisplay(){
+		if (flusher != null) {
+			LCDSwapBuffers();
+			return;
+		}
+		synchronized (wire) {
+			snapshot(shot, shotDamage);
+			transmit(shot.getBytes(), shotDamage, true);
+		}
+	}
+
+	// copies the memory buffer and moves its damage to dst under every page
+	// lock, so a frame only holds completed primitives, never the first pages
+	// of one across several. The drawing waits for a 504 bytes copy at most.
+	private void snapshot(FrameBuffer dst, DamageTracker dstDamage) {
+		byte src[] = frame.getBytes();
+		int pages = locks.lockAll();
+		try {
+			System.arraycopy(src, 0, dst.getBytes(), 0, src.length);
+			for (int p = 0; p < LCDHEIGHT / 8; p++)
+				damage.movePage(p, dstDamage);
+		} finally {
+			locks.unlock(pages);
+		}
+	}
+
+	// sends the dirty parts of buffer and marks them clean, the mirrors get
+	// buffer too if it's a picture of its own and something changed
+	private void transmit(byte[] buffer, DamageTracker dirty, boolean mirrored) {
 		int col, maxcol, p;
 
-		for(p = 0; p < 6; p++)	{
-//	#ifdef enablePartialUpdate
-//			// check if this page is part of update
-//			if ( yUpdateMin >= ((p+1)*8) )
-//			{
-//				continue;   // nope, skip it!
-//			}
-//			if (yUpdateMax < p*8)
-//			{
-//				break;
-//			}
-//	#endif
-
-			LCDCommand(PCD8544_SETYADDR | p);
-
-
-//	#ifdef enablePartialUpdate
-//			col = xUpdateMin;
-//			maxcol = xUpdateMax;
-//	#else
-			// start at the beginning of the row
-			col = 0;
-			maxcol = LCDWIDTH-1;
-//	#endif
-
-			LCDCommand(PCD8544_SETXADDR | col);
-
-			for(; col <= maxcol; col++) {
-				//uart_putw_dec(col);
-				//uart_putchar(' ');
-				LCDData(pcd8544_buffer[(LCDWIDTH*p)+col]);
+		synchronized (wire) {
+			long start = System.nanoTime();
+			boolean changed = dirty.isDirty();
+
+			transport.begin();
+			if (shadowDiff) {
+				differ.transmit(buffer, dirty, transport);
+				transport.end();
+				flushed(start);
+				if (changed && mirrored)
+					mirror(buffer);
+				return;
+			}
+
+			for(p = 0; p < dirty.getPages(); p++)	{
+				// check if this page is part of update
+				if (!dirty.isPageDirty(p))	{
+					continue;   // nope, skip it!
+				}
+
+				transport.command(PCD8544_SETYADDR | p);
+
+				col = dirty.getColumnMin(p);
+				maxcol = dirty.getColumnMax(p);
+
+				transport.command(PCD8544_SETXADDR | col);
+
+				// the whole column run goes to the transport at once
+				transport.data(buffer, (LCDWIDTH*p)+col, maxcol - col + 1);
+				dirty.clearPage(p);
+			}
+
+			if (changed)
+				transport.command(PCD8544_SETYADDR );  // no idea why this is necessary but it is to finish the last byte?
+			transport.end();
+			flushed(start);
+			if (changed && mirrored)
+				mirror(buffer);
+		}
+	}
+
+	// sends a frame that is not the memory buffer, e.g. a GrayScreen sub-frame.
+	// A sub-frame is only a part of the picture, the mirrors don't get it.
+	void transmitPlane(byte[] plane, DamageTracker dirty) {
+		transmit(plane, dirty, false);
+	}
+
+	// hands the mirrors a picture sent some other way than transmit
+	void mirrorFrame(byte[] buffer) {
+		mirror(buffer);
+	}
+
+	// the LCD no longer shows the memory buffer: the next flush sends all of
+	// it, whatever the shadow buffer says
+	void invalidateLCD() {
+		synchronized (wire) {
+			differ.invalidate();
+		}
+		updateBoundingBox(0, 0, LCDWIDTH-1, LCDHEIGHT-1);
+	}
+
+	// hands a displayed frame to the mirrors
+	private void mirror(byte[] buffer) {
+		for (FrameMirror m : mirrors) {
+			m.offer(buffer);
+		}
+	}
+
+	/**
+	 * Copies every displayed frame to sink, e.g. a PngSink to look at the panel
+	 * from a browser or a RingFileSink for RingFileReader. The sink is written
+	 * by a mirror thread, at most maxFps times per second, so it never slows
+	 * down LCDDisplay. With a NullTransport it works without any LCD.
+	 * 
+	 * @param sink
+	 * @param maxFps	0 for no limit
+	 * @return the mirror, with its counters
+	 */
+	public FrameMirror LCDAddMirror(FrameSink sink, double maxFps) {
+		FrameMirror m = new FrameMirror(sink, LCDWIDTH, LCDHEIGHT, maxFps);
+		mirrors.add(m);
+		return m;
+	}
+
+	/**
+	 * Stops mirroring to m, writing its last frame and closing its sink
+	 * 
+	 * @param m
+	 */
+	public void LCDRemoveMirror(FrameMirror m) {
+		if (mirrors.remove(m))
+			m.close();
+	}
+
+	// records a transmit that started at start, with the bytes of its session
+	private void flushed(long start) {
+		if (metrics.isEnabled())
+			metrics.flushed(System.nanoTime() - start, transport.getSessionBytes());
+	}
+
+	/**
+	 * The runtime counters of this LCD: flush times, bytes, GPIO writes, draw
+	 * calls. Poll them with snapshot() or publish them with register(name).
+	 */
+	public LCDMetrics LCDGetMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Turns the shadow buffer on or off. When on (the default), LCDDisplay
+	 * compares the dirty region with a copy of what the LCD already shows and
+	 * only sends the bytes that changed, see FrameDiffer.
+	 * 
+	 * @param on
+	 */
+	public void LCDSetShadowDiff(boolean on) {
+		synchronized (wire) {
+			shadowDiff = on;
+			differ.invalidate();
+		}
+	}
+
+	/**
+	 * The shadow buffer, with the counters of bytes sent and skipped
+	 */
+	public FrameDiffer LCDGetFrameDiffer() {
+		return differ;
+	}
+
+	/**
+	 * Turns double buffering on or off. When on, drawing goes to the back
+	 * buffer while a dedicated flusher thread sends the front buffer to the LCD,
+	 * and LCDSwapBuffers (or LCDDisplay) publishes the finished frames.
+	 * 
+	 * There is one front buffer, so at most one frame is in flight, and the
+	 * "swap" copies the back buffer into it (504 bytes) rather than trading
+	 * the two: the drawing code keeps the same buffer and its contents.
+	 * 
+	 * @param on
+	 */
+	public synchronized void LCDSetDoubleBuffered(boolean on) {
+		if (on == (flusher != null))
+			return;
+
+		if (on) {
+			front = new FrameBuffer(LCDWIDTH, LCDHEIGHT);
+			frontDamage = new DamageTracker(LCDWIDTH, LCDHEIGHT);
+			flusher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "PCD8544 flusher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			notifier = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "PCD8544 frame listeners");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		} else {
+			waitForFlush();
+			flusher.shutdown();
+			flusher = null;
+			// the listeners of the frames already sent still get called
+			notifier.shutdown();
+			notifier = null;
+			front = null;
+			frontDamage = null;
+		}
+	}
+
+	/**
+	 * Publishes the back buffer as the next frame and hands it to the flusher
+	 * thread. Only one frame is in flight: if the previous frame is still being
+	 * sent, this waits for it, otherwise it costs a 504 bytes copy into the
+	 * front buffer and returns. The back buffer keeps its contents, so drawing
+	 * goes on from the published picture.
+	 * 
+	 * @return a future for the frame number, done when the frame is on the LCD
+	 */
+	public synchronized Future<Long> LCDSwapBuffers() {
+		if (flusher == null)
+			throw new IllegalStateException("Double buffering is off, see LCDSetDoubleBuffered");
+
+		// the flusher is done with the front buffer once the previous frame completed
+		waitForFlush();
+
+		snapshot(front, frontDamage);
+
+		final long number = ++frameNumber;
+		final FrameBuffer sent = front;
+		final DamageTracker sentDamage = frontDamage;
+		final ExecutorService listeners = notifier;
+		pendingFrame = flusher.submit(new Callable<Long>() {
+			public Long call() {
+				transmit(sent.getBytes(), sentDamage, true);
+				// not from this task: a listener may publish the next frame,
+				// which waits for this one to complete
+				if (!frameListeners.isEmpty())
+					listeners.execute(new Runnable() {
+						public void run() {
+							for (FrameListener l : frameListeners) {
+								l.frameDisplayed(number);
+							}
+						}
+					});
+				return Long.valueOf(number);
 			}
+		});
+		return pendingFrame;
+	}
+
+	/**
+	 * Registers a callback run after each published frame is on the LCD, from
+	 * a thread of its own, see FrameListener
+	 * 
+	 * @param l
+	 */
+	public void LCDAddFrameListener(FrameListener l) {
+		frameListeners.add(l);
+	}
+
+	public void LCDRemoveFrameListener(FrameListener l) {
+		frameListeners.remove(l);
+	}
+
+	private void waitForFlush() {
+		if (pendingFrame == null)
+			return;
+		try {
+			pendingFrame.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new LCDException("Interrupted while waiting for the LCD", ie);
+		} catch (ExecutionException ee) {
+			throw new LCDException("Frame flush failed", ee.getCause());
+		} finally {
+			pendingFrame = null;
 		}
+	}
 
-		LCDCommand(PCD8544_SETYADDR );  // no idea why this is necessary but it is to finish the last byte?
-//	#ifdef enablePartialUpdate
-//		xUpdateMin = LCDWIDTH - 1;
-//		xUpdateMax = 0;
-//		yUpdateMin = LCDHEIGHT-1;
-//		yUpdateMax = 0;
-//	#endif
+	/**
+	 * True if something was drawn since the last LCDDisplay
+	 */
+	public boolean LCDIsDirty() {
+		return damage.isDirty();
+	}
 
+	/**
+	 * Sends the whole memory buffer to the LCD, whether it was changed or not.
+	 * Useful after the LCD lost its contents (power glitch, external reset, etc)
+	 */
+	public void LCDDisplayAll(){
+		differ.invalidate();
+		damage.markAll();
+		LCDDisplay();
+	}
+
+	/**
+	 * Releases the transport, e.g. closes the SPI device node
+	 */
+	public void LCDClose() {
+		LCDSetDoubleBuffered(false);
+		for (FrameMirror m : mirrors) {
+			LCDRemoveMirror(m);
+		}
+		transport.close();
 	}
 
 	// clear everything
 	public void LCDClear() {
-		//memset(pcd8544_buffer, 0, LCDWIDTH*LCDHEIGHT/8);
-		int i;
-		for ( i = 0; i < LCDWIDTH*LCDHEIGHT/8 ; i++)
-			pcd8544_buffer[i] = 0;
-		updateBoundingBox(0, 0, LCDWIDTH-1, LCDHEIGHT-1);
-		cursor_y = cursor_x = 0;
+		metrics.draw(LCDMetrics.CLEAR);
+		int pages = locks.lockAll();
+		try {
+			frame.clear();
+			updateBoundingBox(0, 0, LCDWIDTH-1, LCDHEIGHT-1);
+		} finally {
+			locks.unlock(pages);
+		}
+		DrawContext ctx = context.get();
+		ctx.cursorY = ctx.cursorX = 0;
 	}
 
-	// bitbang serial shift out on select GPIO pin. Data rate is defined by CPU clk speed and CLKCONST_2. 
-	// Calibrate these value for your need on target platform.
+	// bitbang serial shift out on select GPIO pin, see BitBangTransport. Waits
+	// for the transport to be idle, in case those are the LCD pins.
 	public void shiftOut(GpioPinDigitalOutput dataPin, GpioPinDigitalOutput clockPin, int bitOrder, long val)	{
-		
-		//	C version - doesnt work in Java because the !)@*#(@! bitwise NOT operator
-		// 		In java we have the complement ~ operator, but its not bitwise NOT
-		//		Dont you agree? Try to compile this code with C with a random number. Put the same number
-		//		in Java. View the results.
-		//
-		//		long i, j;
-		//		
-		//		for (i = 0; i < 8; i++)  {
-		//			if (bitOrder == LSBFIRST)
-		//				digitalWrite(dataPin, ~(val & (1 << i)));
-		//			else
-		//				digitalWrite(dataPin, ~(val & (1 << (7-i))));
-		//				
-		//			digitalWrite(clockPin, HIGH);
-		//			for (j = CLKCONST_2; j > 0; j--); // clock speed, anyone? (LCD Max CLK input: 4MHz)
-		//			digitalWrite(clockPin, LOW);
-		//		}
-		long i, j;
-		
-		for (i = 0; i < 8; i++)  {
-			if (bitOrder == LSBFIRST)
-				digitalWrite(dataPin, ((val & (1 << i)) == Math.pow(2, i))?HIGH:LOW);
-			else
-				digitalWrite(dataPin, ((val & (1 << (7-i))) == Math.pow(2, (7-i)))?HIGH:LOW);
-				
-			digitalWrite(clockPin, HIGH);
-			for (j = CLKCONST_2; j > 0; j--); // clock speed, anyone? (LCD Max CLK input: 4MHz)
-			digitalWrite(clockPin, LOW);
+		synchronized (wire) {
+			BitBangTransport.shiftOut(dataPin, clockPin, bitOrder, val);
 		}
-
 	}
 
 	
-	// roughly calibrated spin delay
+	// parks the thread for t ms, see LCDTiming
 	private void delayMs(int t)	{
-		int nCount = 0;
-		while (t != 0)
-		{
-			nCount = CLKCONST_1;
-			while(nCount != 0)
-				nCount--;
-			t--;
-		}
+		LCDTiming.delayMs(t);
 	}
 
 	
 	/**
-	 * A pi4j port of arduino digitalWrite
+	 * A pi4j port of arduino digitalWrite. Waits for the transport to be idle,
+	 * in case pin is one of the LCD pins.
 	 * 
 	 * @param pin
 	 * @param state
 	 */
 	public void digitalWrite(GpioPinDigitalOutput pin, long state) {
-		if (state == HIGH){
-			pin.high();
-		}else {
-			pin.low();
+		synchronized (wire) {
+			BitBangTransport.digitalWrite(pin, state);
 		}
-		
-//		try {
-//			//100ms to delay. Slow, but in the initial stage
-//			//Thread.sleep(100);
-//		}catch(InterruptedException ie ){
-//			ie.printStackTrace();
-//		}
-		
 	}
 	
 	/**
@@ -945,11 +1397,15 @@ public class JPCD8544 {
 		 // print infos
 		  System.out.println("Raspberry Pi PCD8544 test in Java\n");
 		  System.out.println("========================================\n");
-		  System.out.println("CLK on Port "+_sclk.getPin().getName()+"\n");
-		  System.out.println("DIN on Port "+_din.getPin().getName()+"\n");
-		  System.out.println("DC on Port "+_dc.getPin().getName()+"\n");
-		  System.out.println("CS on Port "+_cs.getPin().getName()+"\n");
-		  System.out.println("RST on Port "+_rst.getPin().getName()+"\n");  
+		  if (_din != null) {
+			  System.out.println("CLK on Port "+_sclk.getPin().getName()+"\n");
+			  System.out.println("DIN on Port "+_din.getPin().getName()+"\n");
+			  System.out.println("DC on Port "+_dc.getPin().getName()+"\n");
+			  System.out.println("CS on Port "+_cs.getPin().getName()+"\n");
+			  System.out.println("RST on Port "+_rst.getPin().getName()+"\n");  
+		  } else {
+			  System.out.println("LCD on "+transport.getTransport().getClass().getSimpleName()+"\n");
+		  }
 		  System.out.println("========================================\n");
 		  
 		  
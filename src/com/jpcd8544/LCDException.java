@@ -0,0 +1,18 @@
+package com.jpcd8544;
+
+/**
+ * Thrown when the driver can't talk to the LCD, e.g. when a device node
+ * can't be opened or written.
+ */
+public class LCDException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public LCDException(String message) {
+		super(message);
+	}
+
+	public LCDException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
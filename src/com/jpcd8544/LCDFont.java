@@ -0,0 +1,213 @@
+package com.jpcd8544;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+	 Name		 : LCDFont.java
+
+	 Description :
+	     A bitmap font compiled for the LCD. Every glyph is stored as a block in
+	     the page layout of the display RAM (one byte per column and 8 rows,
+	     bit 0 on top), all the blocks packed one after the other in a single
+	     atlas. A glyph is drawn with one blit, a string is put together by
+	     ORing its glyph blocks into a strip (see render).
+
+	     Glyphs may have different widths: each one has its own block width and
+	     its own advance, the distance to the next glyph.
+
+	     A font holds no per LCD state, so one instance can be shared by any
+	     number of JPCD8544 objects and threads. Fonts come from a BDF file
+	     (loadBdf) or from a table of vertical bytes like the classic 5x7 font
+	     (fromColumns).
+*/
+
+public class LCDFont {
+
+	private final String name;
+	private final int height;
+	private final int pages;
+
+	// the glyph blocks, pages * width bytes each, page by page
+	private final byte atlas[];
+
+	// per character code, -1 offset for the missing ones
+	private final int offset[];
+	private final int width[];
+	private final int advance[];
+	private final int defaultChar;
+
+	LCDFont(String name, int height, byte[] atlas, int[] offset, int[] width, int[] advance, int defaultChar) {
+		this.name = name;
+		this.height = height;
+		this.pages = (height + 7) / 8;
+		this.atlas = atlas;
+		this.offset = offset;
+		this.width = width;
+		this.advance = advance;
+		this.defaultChar = defaultChar;
+	}
+
+	/**
+	 * A fixed width font from a table of vertical bytes, glyphWidth per
+	 * character starting from code 0, like the font[] of the original driver
+	 *
+	 * @param name
+	 * @param columns
+	 * @param glyphWidth	bytes per character
+	 * @param advance		distance between two characters, glyphWidth + 1 for one spacing column
+	 */
+	public static LCDFont fromColumns(String name, int[] columns, int glyphWidth, int advance) {
+		int glyphs = columns.length / glyphWidth;
+		byte atlas[] = new byte[glyphs * glyphWidth];
+		int offsets[] = new int[glyphs];
+		int widths[] = new int[glyphs];
+		int advances[] = new int[glyphs];
+
+		for (int c = 0; c < glyphs; c++) {
+			offsets[c] = c * glyphWidth;
+			widths[c] = glyphWidth;
+			advances[c] = advance;
+			for (int i = 0; i < glyphWidth; i++)
+				atlas[c * glyphWidth + i] = (byte) columns[c * glyphWidth + i];
+		}
+		return new LCDFont(name, 8, atlas, offsets, widths, advances, '?' < glyphs ? '?' : -1);
+	}
+
+	/**
+	 * Loads a BDF font
+	 *
+	 * @param file
+	 */
+	public static LCDFont loadBdf(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return loadBdf(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Loads a BDF font, see BdfParser
+	 *
+	 * @param in	left open
+	 */
+	public static LCDFont loadBdf(InputStream in) throws IOException {
+		return new BdfParser().parse(in);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Rows from the top of the tallest glyph to the bottom of the lowest one
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Pages (8 rows) of a glyph block
+	 */
+	public int getPages() {
+		return pages;
+	}
+
+	public boolean hasGlyph(int c) {
+		return c >= 0 && c < offset.length && offset[c] >= 0;
+	}
+
+	/**
+	 * The distance from character c to the next one, 0 if the font doesn't
+	 * have it (and no default character)
+	 *
+	 * @param c
+	 */
+	public int getAdvance(int c) {
+		c = glyph(c);
+		return c < 0 ? 0 : advance[c];
+	}
+
+	/**
+	 * The width of s drawn with this font, in pixels
+	 *
+	 * @param s
+	 */
+	public int getTextWidth(String s) {
+		int pen = 0, right = 0;
+		for (int i = 0; i < s.length(); i++) {
+			int c = glyph(s.charAt(i));
+			if (c < 0)
+				continue;
+			right = Math.max(right, pen + width[c]);
+			pen += advance[c];
+		}
+		return Math.max(pen, right);
+	}
+
+	/**
+	 * Renders s in a strip of getTextWidth(s) columns by getPages() pages, in
+	 * the page layout. Black text on white, or white on black.
+	 *
+	 * @param s
+	 * @param black
+	 */
+	public TextStrip render(String s, boolean black) {
+		int w = getTextWidth(s);
+		byte strip[] = new byte[w * pages];
+		int pen = 0;
+
+		for (int i = 0; i < s.length(); i++) {
+			int c = glyph(s.charAt(i));
+			if (c < 0)
+				continue;
+			int gw = width[c];
+			for (int p = 0; p < pages; p++) {
+				int src = offset[c] + p * gw;
+				int dst = p * w + pen;
+				for (int x = 0; x < gw; x++)
+					strip[dst + x] |= atlas[src + x];
+			}
+			pen += advance[c];
+		}
+
+		if (!black) {
+			for (int i = 0; i < strip.length; i++)
+				strip[i] = (byte) ~strip[i];
+		}
+		return new TextStrip(strip, w, height);
+	}
+
+	/**
+	 * The block of character c in getAtlas(), getGlyphWidth(c) columns by
+	 * getPages() pages, or -1 if there's none
+	 *
+	 * @param c
+	 */
+	public int getGlyphOffset(int c) {
+		c = glyph(c);
+		return c < 0 ? -1 : offset[c];
+	}
+
+	public int getGlyphWidth(int c) {
+		c = glyph(c);
+		return c < 0 ? 0 : width[c];
+	}
+
+	byte[] getAtlas() {
+		return atlas;
+	}
+
+	// c, or the default character if the font doesn't have c
+	private int glyph(int c) {
+		return hasGlyph(c) ? c : defaultChar;
+	}
+
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,252 @@
+package com.jpcd8544;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+	 Name		 : LCDMetrics.java
+
+	 Description :
+	     Runtime counters of one LCD: how long the flushes take and how many
+	     bytes they carry, command vs data bytes, GPIO writes and the time lost
+	     in the bit-bang clock delays, and how many times each drawing primitive
+	     was called.
+
+	     Updating a counter is one atomic add, and the bit-bang transport adds
+	     its counts once per byte, not per pin write. The drawing primitives,
+	     called from any number of threads, count in LongAdders so the threads
+	     don't fight over a shared cache line; the sums are taken on reads. The spin time is sampled on
+	     one byte out of SPIN_SAMPLE and scaled up. So it can stay enabled in
+	     production. Read it with snapshot() or through JMX, see register().
+*/
+
+public class LCDMetrics implements LCDMetricsMBean {
+
+	// drawing primitives
+	public static final int SET_PIXEL = 0;
+	public static final int DRAW_LINE = 1;
+	public static final int DRAW_RECT = 2;
+	public static final int FILL_RECT = 3;
+	public static final int DRAW_CIRCLE = 4;
+	public static final int FILL_CIRCLE = 5;
+	public static final int DRAW_CHAR = 6;
+	public static final int DRAW_BITMAP = 7;
+	public static final int CLEAR = 8;
+	public static final int SCROLL = 9;
+
+	private static final String PRIMITIVES[] = {
+		"SetPixel", "DrawLine", "DrawRect", "FillRect", "DrawCircle",
+		"FillCircle", "DrawChar", "DrawBitmap", "Clear", "Scroll",
+	};
+
+	// bit-bang spin delays are timed on one byte out of SPIN_SAMPLE
+	public static final int SPIN_SAMPLE = 64;
+
+	private static final int BUCKETS = 32;
+
+	// counters
+	private static final int FLUSHES = 0;
+	private static final int REDUNDANT_FLUSHES = 1;
+	private static final int FLUSH_NANOS = 2;
+	private static final int MAX_FLUSH_NANOS = 3;
+	private static final int COMMAND_BYTES = 4;
+	private static final int DATA_BYTES = 5;
+	private static final int GPIO_WRITES = 6;
+	private static final int SPIN_NANOS = 7;
+	private static final int COUNTERS = 8;
+
+	private volatile boolean enabled = true;
+
+	private final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+	private final AtomicLongArray flushMicros = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray flushBytes = new AtomicLongArray(BUCKETS);
+	private final LongAdder drawCalls[] = new LongAdder[PRIMITIVES.length];
+
+	public LCDMetrics() {
+		for (int i = 0; i < drawCalls.length; i++)
+			drawCalls[i] = new LongAdder();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Records a flush of the frame buffer
+	 *
+	 * @param nanos	how long it took
+	 * @param bytes	command and data bytes sent, 0 if the LCD was already up to date
+	 */
+	public void flushed(long nanos, long bytes) {
+		if (!enabled)
+			return;
+		counters.incrementAndGet(FLUSHES);
+		counters.addAndGet(FLUSH_NANOS, nanos);
+		if (bytes == 0)
+			counters.incrementAndGet(REDUNDANT_FLUSHES);
+
+		long max;
+		while (nanos > (max = counters.get(MAX_FLUSH_NANOS))) {
+			if (counters.compareAndSet(MAX_FLUSH_NANOS, max, nanos))
+				break;
+		}
+		flushMicros.incrementAndGet(bucket(nanos / 1000));
+		flushBytes.incrementAndGet(bucket(bytes));
+	}
+
+	public void commandBytes(int n) {
+		if (enabled)
+			counters.addAndGet(COMMAND_BYTES, n);
+	}
+
+	public void dataBytes(int n) {
+		if (enabled)
+			counters.addAndGet(DATA_BYTES, n);
+	}
+
+	public void gpioWrites(int n) {
+		if (enabled)
+			counters.addAndGet(GPIO_WRITES, n);
+	}
+
+	public void spinNanos(long nanos) {
+		if (enabled)
+			counters.addAndGet(SPIN_NANOS, nanos);
+	}
+
+	/**
+	 * Counts a call of a drawing primitive
+	 *
+	 * @param primitive	SET_PIXEL, DRAW_LINE...
+	 */
+	public void draw(int primitive) {
+		if (enabled)
+			drawCalls[primitive].increment();
+	}
+
+	private static int bucket(long value) {
+		if (value <= 0)
+			return 0;
+		return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(value));
+	}
+
+	public long getFlushes() {
+		return counters.get(FLUSHES);
+	}
+
+	public long getRedundantFlushes() {
+		return counters.get(REDUNDANT_FLUSHES);
+	}
+
+	public long getMeanFlushMicros() {
+		long n = counters.get(FLUSHES);
+		return n == 0 ? 0 : counters.get(FLUSH_NANOS) / n / 1000;
+	}
+
+	public long getMaxFlushMicros() {
+		return counters.get(MAX_FLUSH_NANOS) / 1000;
+	}
+
+	public long[] getFlushMicrosHistogram() {
+		return toArray(flushMicros);
+	}
+
+	public long[] getFlushBytesHistogram() {
+		return toArray(flushBytes);
+	}
+
+	public long getCommandBytes() {
+		return counters.get(COMMAND_BYTES);
+	}
+
+	public long getDataBytes() {
+		return counters.get(DATA_BYTES);
+	}
+
+	public long getGpioWrites() {
+		return counters.get(GPIO_WRITES);
+	}
+
+	public long getSpinMicros() {
+		return counters.get(SPIN_NANOS) / 1000;
+	}
+
+	public String[] getPrimitiveNames() {
+		return PRIMITIVES.clone();
+	}
+
+	public long[] getDrawCalls() {
+		long r[] = new long[drawCalls.length];
+		for (int i = 0; i < r.length; i++)
+			r[i] = drawCalls[i].sum();
+		return r;
+	}
+
+	public void reset() {
+		clear(counters);
+		clear(flushMicros);
+		clear(flushBytes);
+		for (LongAdder a : drawCalls)
+			a.reset();
+	}
+
+	/**
+	 * A copy of every counter, for polling without JMX
+	 */
+	public LCDMetricsSnapshot snapshot() {
+		return new LCDMetricsSnapshot(System.currentTimeMillis(),
+				getFlushes(), getRedundantFlushes(), getMeanFlushMicros(), getMaxFlushMicros(),
+				getFlushMicrosHistogram(), getFlushBytesHistogram(),
+				getCommandBytes(), getDataBytes(), getGpioWrites(), getSpinMicros(),
+				getPrimitiveNames(), getDrawCalls());
+	}
+
+	/**
+	 * Publishes the counters on the platform MBean server as
+	 * com.jpcd8544:type=LCDMetrics,name=[name]
+	 *
+	 * @param name	tells the LCDs apart, e.g. "main" or "panel0"
+	 */
+	public void register(String name) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(this, objectName(name));
+		} catch (JMException e) {
+			throw new LCDException("Can't register the LCD metrics as " + name, e);
+		}
+	}
+
+	public void unregister(String name) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.unregisterMBean(objectName(name));
+		} catch (JMException e) {
+			throw new LCDException("Can't unregister the LCD metrics " + name, e);
+		}
+	}
+
+	private static ObjectName objectName(String name) throws JMException {
+		return new ObjectName("com.jpcd8544:type=LCDMetrics,name=" + ObjectName.quote(name));
+	}
+
+	private static long[] toArray(AtomicLongArray a) {
+		long r[] = new long[a.length()];
+		for (int i = 0; i < r.length; i++)
+			r[i] = a.get(i);
+		return r;
+	}
+
+	private static void clear(AtomicLongArray a) {
+		for (int i = 0; i < a.length(); i++)
+			a.set(i, 0);
+	}
+}
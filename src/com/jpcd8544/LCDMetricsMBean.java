@@ -0,0 +1,38 @@
+package com.jpcd8544;
+
+/**
+ * The JMX view of LCDMetrics. Times are in microseconds, histograms have one
+ * bucket per power of 2 (bucket i counts the values in [2^i, 2^(i+1)) ).
+ */
+public interface LCDMetricsMBean {
+
+	public boolean isEnabled();
+
+	public void setEnabled(boolean enabled);
+
+	public long getFlushes();
+
+	public long getRedundantFlushes();
+
+	public long getMeanFlushMicros();
+
+	public long getMaxFlushMicros();
+
+	public long[] getFlushMicrosHistogram();
+
+	public long[] getFlushBytesHistogram();
+
+	public long getCommandBytes();
+
+	public long getDataBytes();
+
+	public long getGpioWrites();
+
+	public long getSpinMicros();
+
+	public String[] getPrimitiveNames();
+
+	public long[] getDrawCalls();
+
+	public void reset();
+}
@@ -0,0 +1,116 @@
+package com.jpcd8544;
+
+/**
+ * The LCDMetrics counters at one point in time. Times are in microseconds,
+ * histograms have one bucket per power of 2.
+ */
+public class LCDMetricsSnapshot {
+
+	private final long timestamp;
+	private final long flushes;
+	private final long redundantFlushes;
+	private final long meanFlushMicros;
+	private final long maxFlushMicros;
+	private final long flushMicrosHistogram[];
+	private final long flushBytesHistogram[];
+	private final long commandBytes;
+	private final long dataBytes;
+	private final long gpioWrites;
+	private final long spinMicros;
+	private final String primitiveNames[];
+	private final long drawCalls[];
+
+	LCDMetricsSnapshot(long timestamp, long flushes, long redundantFlushes,
+			long meanFlushMicros, long maxFlushMicros,
+			long[] flushMicrosHistogram, long[] flushBytesHistogram,
+			long commandBytes, long dataBytes, long gpioWrites, long spinMicros,
+			String[] primitiveNames, long[] drawCalls) {
+		this.timestamp = timestamp;
+		this.flushes = flushes;
+		this.redundantFlushes = redundantFlushes;
+		this.meanFlushMicros = meanFlushMicros;
+		this.maxFlushMicros = maxFlushMicros;
+		this.flushMicrosHistogram = flushMicrosHistogram;
+		this.flushBytesHistogram = flushBytesHistogram;
+		this.commandBytes = commandBytes;
+		this.dataBytes = dataBytes;
+		this.gpioWrites = gpioWrites;
+		this.spinMicros = spinMicros;
+		this.primitiveNames = primitiveNames;
+		this.drawCalls = drawCalls;
+	}
+
+	/**
+	 * When the snapshot was taken, System.currentTimeMillis()
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public long getFlushes() {
+		return flushes;
+	}
+
+	/**
+	 * Flushes that found the LCD already up to date
+	 */
+	public long getRedundantFlushes() {
+		return redundantFlushes;
+	}
+
+	public long getMeanFlushMicros() {
+		return meanFlushMicros;
+	}
+
+	public long getMaxFlushMicros() {
+		return maxFlushMicros;
+	}
+
+	public long[] getFlushMicrosHistogram() {
+		return flushMicrosHistogram.clone();
+	}
+
+	public long[] getFlushBytesHistogram() {
+		return flushBytesHistogram.clone();
+	}
+
+	public long getCommandBytes() {
+		return commandBytes;
+	}
+
+	public long getDataBytes() {
+		return dataBytes;
+	}
+
+	public long getGpioWrites() {
+		return gpioWrites;
+	}
+
+	public long getSpinMicros() {
+		return spinMicros;
+	}
+
+	/**
+	 * Calls of one drawing primitive
+	 *
+	 * @param primitive	LCDMetrics.SET_PIXEL, LCDMetrics.DRAW_LINE...
+	 */
+	public long getDrawCalls(int primitive) {
+		return drawCalls[primitive];
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("flushes=").append(flushes)
+			.append(" redundant=").append(redundantFlushes)
+			.append(" meanFlush=").append(meanFlushMicros).append("us")
+			.append(" maxFlush=").append(maxFlushMicros).append("us")
+			.append(" commandBytes=").append(commandBytes)
+			.append(" dataBytes=").append(dataBytes)
+			.append(" gpioWrites=").append(gpioWrites)
+			.append(" spin=").append(spinMicros).append("us");
+		for (int i = 0; i < drawCalls.length; i++)
+			sb.append(' ').append(primitiveNames[i]).append('=').append(drawCalls[i]);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,156 @@
+package com.jpcd8544;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+	 Name		 : LCDTiming.java
+
+	 Description :
+	     Delays for the bit-bang clock and the LCD reset, measured against
+	     System.nanoTime instead of empty counting loops (which the JIT is free
+	     to remove, and whose speed depends on the CPU anyway).
+
+	     At class load the cost of one System.nanoTime call and the speed of a
+	     spin loop are calibrated. Then a delay is:
+	     - parked (LockSupport.parkNanos) when it is long, leaving the core free,
+	       and the wake up slack is spun off against the deadline,
+	     - spun against System.nanoTime when it is longer than a few clock reads,
+	     - a calibrated spin loop when it is shorter than that, e.g. the 125ns
+	       half period of a 4MHz SCLK.
+*/
+
+public class LCDTiming {
+
+	/**
+	 * The PCD8544 maximum serial clock, 4MHz
+	 */
+	public static final long MAX_SCLK_HZ = 4000000;
+
+	// delays from here on are parked, the scheduler wake up slack is spun off
+	private static final long PARK_THRESHOLD_NANOS = 200000;
+	private static final long PARK_SLACK_NANOS = 100000;
+
+	// calibration results
+	private static final long NANOTIME_COST;
+	private static final double SPINS_PER_NANO;
+
+	// keeps the spin loops observable, so the JIT can't drop them
+	private static volatile int sink;
+
+	static {
+		NANOTIME_COST = measureNanoTimeCost();
+		SPINS_PER_NANO = measureSpinSpeed();
+	}
+
+	private final long sclkHz;
+	private final long halfPeriod;
+
+	/**
+	 * Timing for a serial clock of sclkHz, at most MAX_SCLK_HZ
+	 *
+	 * @param sclkHz
+	 */
+	public LCDTiming(long sclkHz) {
+		if (sclkHz <= 0 || sclkHz > MAX_SCLK_HZ)
+			sclkHz = MAX_SCLK_HZ;
+		this.sclkHz = sclkHz;
+		this.halfPeriod = 1000000000L / (2 * sclkHz);
+	}
+
+	public long getClockFrequency() {
+		return sclkHz;
+	}
+
+	public long getHalfPeriodNanos() {
+		return halfPeriod;
+	}
+
+	/**
+	 * Waits half a clock period, call it after each SCLK edge
+	 */
+	public void halfPeriod() {
+		delayNanos(halfPeriod);
+	}
+
+	/**
+	 * Waits at least nanos nanoseconds
+	 *
+	 * @param nanos
+	 */
+	public static void delayNanos(long nanos) {
+		if (nanos <= 0)
+			return;
+		if (nanos <= 4 * NANOTIME_COST) {
+			spin((int) (nanos * SPINS_PER_NANO));
+			return;
+		}
+
+		long deadline = System.nanoTime() + nanos;
+		if (nanos >= PARK_THRESHOLD_NANOS) {
+			long left;
+			// parkNanos may return early, so park again until close enough
+			while ((left = deadline - System.nanoTime()) > PARK_SLACK_NANOS)
+				LockSupport.parkNanos(left - PARK_SLACK_NANOS);
+		}
+		while (deadline - System.nanoTime() > 0)
+			;
+	}
+
+	/**
+	 * Waits ms milliseconds without burning a core, like the LCD reset does
+	 *
+	 * @param ms
+	 */
+	public static void delayMs(int ms) {
+		delayNanos(ms * 1000000L);
+	}
+
+	/**
+	 * What one System.nanoTime call costs on this machine, in nanoseconds
+	 */
+	public static long getNanoTimeCost() {
+		return NANOTIME_COST;
+	}
+
+	/**
+	 * Calibrated spin loop iterations per nanosecond
+	 */
+	public static double getSpinsPerNano() {
+		return SPINS_PER_NANO;
+	}
+
+	private static void spin(int n) {
+		int x = sink;
+		for (int i = 0; i < n; i++)
+			x = x * 31 + i;
+		// never true in practice, but the JIT can't know
+		if (x == 0x7fffffff)
+			sink = x;
+	}
+
+	private static long measureNanoTimeCost() {
+		final int n = 20000;
+		int i;
+		// warm up first
+		for (i = 0; i < n; i++)
+			System.nanoTime();
+		long start = System.nanoTime();
+		for (i = 0; i < n; i++)
+			System.nanoTime();
+		return Math.max(1, (System.nanoTime() - start) / n);
+	}
+
+	private static double measureSpinSpeed() {
+		final int n = 1000000;
+		long best = Long.MAX_VALUE;
+		// the fastest of a few rounds, the later ones run compiled
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			spin(n);
+			long took = System.nanoTime() - start;
+			if (took < best)
+				best = took;
+		}
+		return (double) n / Math.max(1, best);
+	}
+}
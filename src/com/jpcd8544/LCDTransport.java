@@ -0,0 +1,64 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : LCDTransport.java
+
+	 Description :
+	     The wire between the driver and the PCD8544 controller. LCDCommand and
+	     LCDData go through a transport, so the bytes may be bit-banged on GPIO
+	     pins (BitBangTransport) or pushed through the kernel SPI driver
+	     (SpiDevTransport).
+
+	     Calls made between begin() and end() belong to one transfer session. A
+	     transport may hold them back and send them in bulk, but everything must be
+	     on the wire when end() returns. Calls made outside a session are sent
+	     right away.
+*/
+
+public interface LCDTransport {
+
+	/**
+	 * Starts a transfer session
+	 */
+	public void begin();
+
+	/**
+	 * Sends a command byte (D/C low)
+	 *
+	 * @param c
+	 */
+	public void command(int c);
+
+	/**
+	 * Sends a data byte (D/C high)
+	 *
+	 * @param c
+	 */
+	public void data(int c);
+
+	/**
+	 * Sends len data bytes (D/C high) from buf, starting at off
+	 *
+	 * @param buf
+	 * @param off
+	 * @param len
+	 */
+	public void data(byte[] buf, int off, int len);
+
+	/**
+	 * What it costs to break a run of data bytes with one command byte and go on
+	 * with the data, in data byte times. It decides whether skipping a few
+	 * unchanged bytes with an addressing command is cheaper than resending them.
+	 */
+	public int getRestartCost();
+
+	/**
+	 * Finishes a transfer session, flushing whatever is still pending
+	 */
+	public void end();
+
+	/**
+	 * Releases the resources held by the transport
+	 */
+	public void close();
+}
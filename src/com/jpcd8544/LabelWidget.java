@@ -0,0 +1,107 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : LabelWidget.java
+
+	 Description :
+	     One line of text. Characters that don't fit the width are cut off, so
+	     a label never draws outside its rectangle.
+*/
+
+public class LabelWidget extends Widget {
+
+	// alignments
+	public static final int LEFT = 0;
+	public static final int CENTER = 1;
+	public static final int RIGHT = 2;
+
+	private final int textSize;
+	private String text;
+	private int align = LEFT;
+	private boolean inverted;
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param text
+	 */
+	public LabelWidget(int x, int y, int width, String text) {
+		this(x, y, width, 1, text);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param textSize	1 for the 5x7 font, 2 for 10x14...
+	 * @param text
+	 */
+	public LabelWidget(int x, int y, int width, int textSize, String text) {
+		super(x, y, width, 8 * textSize);
+		this.textSize = textSize;
+		this.text = text == null ? "" : text;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Changes the text, the label is repainted only if it's different
+	 *
+	 * @param s
+	 */
+	public void setText(String s) {
+		if (s == null)
+			s = "";
+		if (!s.equals(text)) {
+			text = s;
+			invalidate();
+		}
+	}
+
+	/**
+	 * @param a	LEFT, CENTER or RIGHT
+	 */
+	public void setAlignment(int a) {
+		if (a != align) {
+			align = a;
+			invalidate();
+		}
+	}
+
+	/**
+	 * White text on black
+	 *
+	 * @param on
+	 */
+	public void setInverted(boolean on) {
+		if (on != inverted) {
+			inverted = on;
+			invalidate();
+		}
+	}
+
+	protected void paint(JPCD8544 lcd) {
+		int cell = 6 * textSize;
+		int n = Math.min(text.length(), width / cell);
+		int cx = x;
+		if (align == RIGHT)
+			cx += width - n * cell;
+		else if (align == CENTER)
+			cx += (width - n * cell) / 2;
+
+		if (inverted)
+			lcd.LCDFillRect(x, y, width, height, lcd.BLACK);
+
+		int size = lcd.LCDGetTextSize();
+		int color = lcd.LCDGetTextColor();
+		lcd.LCDSetTextSize(textSize);
+		lcd.LCDSetTextColor(inverted ? lcd.WHITE : lcd.BLACK);
+		for (int i = 0; i < n; i++, cx += cell)
+			lcd.LCDDrawChar(cx, y, text.charAt(i));
+		lcd.LCDSetTextSize(size);
+		lcd.LCDSetTextColor(color);
+	}
+}
@@ -0,0 +1,75 @@
+package com.jpcd8544;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+	 Name		 : MappedGpioRegisters.java
+
+	 Description :
+	     The GPIO register page mapped in memory through NIO. /dev/gpiomem gives
+	     the GPIO block of the BCM283x to any user of the gpio group, without
+	     root. A regular file of at least one page may stand in for it, e.g. to
+	     run the driver off the Pi.
+
+	     The registers are written through the mapped buffer, each write
+	     followed by a volatile store. That keeps the JIT from merging or
+	     reordering the register writes, a SET followed by a CLR of the same
+	     pin really makes a pulse.
+*/
+
+public class MappedGpioRegisters implements GpioRegisters {
+
+	public static final String GPIOMEM = "/dev/gpiomem";
+
+	private static final int PAGE_SIZE = 4096;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer registers;
+
+	// written after each register write, see above
+	private volatile int fence;
+
+	/**
+	 * Maps /dev/gpiomem
+	 */
+	public MappedGpioRegisters() {
+		this(GPIOMEM);
+	}
+
+	/**
+	 * Maps the first page of path
+	 *
+	 * @param path	/dev/gpiomem or a stand-in file
+	 */
+	public MappedGpioRegisters(String path) {
+		try {
+			file = new RandomAccessFile(path, "rw");
+			registers = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, PAGE_SIZE);
+		} catch (IOException e) {
+			throw new LCDException("Can't map the GPIO registers from " + path, e);
+		}
+		// the ARM cores run little endian
+		registers.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public int read(int offset) {
+		return registers.getInt(offset);
+	}
+
+	public void write(int offset, int value) {
+		registers.putInt(offset, value);
+		fence = value;
+	}
+
+	public void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			throw new LCDException("Can't unmap the GPIO registers", e);
+		}
+	}
+}
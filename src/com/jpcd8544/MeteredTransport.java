@@ -0,0 +1,81 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : MeteredTransport.java
+
+	 Description :
+	     Counts the command and data bytes going through a transport into
+	     LCDMetrics. One add per call, a bulk data call counts as one.
+
+	     The bytes of the current (or last) begin/end session are counted
+	     apart, so a flush knows what it sent itself, whatever other threads
+	     send before or after it.
+*/
+
+public class MeteredTransport implements LCDTransport {
+
+	private final LCDTransport transport;
+	private final LCDMetrics metrics;
+	private int depth;
+	private long sessionBytes;
+
+	public MeteredTransport(LCDTransport transport, LCDMetrics metrics) {
+		this.transport = transport;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * The transport behind the counters
+	 */
+	public LCDTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * The command and data bytes sent in the current session, or in the last
+	 * one once it ended
+	 */
+	public long getSessionBytes() {
+		return sessionBytes;
+	}
+
+	public void begin() {
+		transport.begin();
+		if (depth++ == 0)
+			sessionBytes = 0;
+	}
+
+	public void command(int c) {
+		transport.command(c);
+		metrics.commandBytes(1);
+		if (depth > 0)
+			sessionBytes++;
+	}
+
+	public void data(int c) {
+		transport.data(c);
+		metrics.dataBytes(1);
+		if (depth > 0)
+			sessionBytes++;
+	}
+
+	public void data(byte[] buf, int off, int len) {
+		transport.data(buf, off, len);
+		metrics.dataBytes(len);
+		if (depth > 0)
+			sessionBytes += len;
+	}
+
+	public int getRestartCost() {
+		return transport.getRestartCost();
+	}
+
+	public void end() {
+		depth--;
+		transport.end();
+	}
+
+	public void close() {
+		transport.close();
+	}
+}
@@ -0,0 +1,36 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : NullTransport.java
+
+	 Description :
+	     A transport with no LCD behind it, every byte is dropped. With it the
+	     driver renders off the Pi, in a test or on a build machine, and the
+	     frames can still be seen through a FrameMirror.
+*/
+
+public class NullTransport implements LCDTransport {
+
+	public void begin() {
+	}
+
+	public void command(int c) {
+	}
+
+	public void data(int c) {
+	}
+
+	public void data(byte[] buf, int off, int len) {
+	}
+
+	// nothing is sent anyway, let the shadow buffer skip whatever it likes
+	public int getRestartCost() {
+		return 1;
+	}
+
+	public void end() {
+	}
+
+	public void close() {
+	}
+}
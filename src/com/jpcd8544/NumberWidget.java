@@ -0,0 +1,43 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : NumberWidget.java
+
+	 Description :
+	     A right aligned numeric field. The value is formatted only when it
+	     changes, and the field is repainted only when the formatted text does,
+	     so 21.04 and 21.03 shown as "21.0" cost nothing.
+*/
+
+public class NumberWidget extends LabelWidget {
+
+	private final String format;
+	private double value = Double.NaN;
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param format	a String.format pattern for one double, e.g. "%5.1fC"
+	 */
+	public NumberWidget(int x, int y, int width, String format) {
+		this(x, y, width, 1, format);
+	}
+
+	public NumberWidget(int x, int y, int width, int textSize, String format) {
+		super(x, y, width, textSize, "");
+		this.format = format;
+		setAlignment(RIGHT);
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public void setValue(double v) {
+		if (Double.compare(v, value) == 0)
+			return;
+		value = v;
+		setText(String.format(format, v));
+	}
+}
@@ -0,0 +1,79 @@
+package com.jpcd8544;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+	 Name		 : PageLocks.java
+
+	 Description :
+	     One lock per 8 rows page of the memory buffer, so threads drawing in
+	     different parts of the screen don't wait for each other. A drawing
+	     primitive locks the pages its rows fall in, always in ascending order,
+	     so two primitives can't deadlock. The locks are reentrant.
+
+	     LCDDisplay copies the buffer under lockAll, so a frame only contains
+	     completed primitives; the copy is 504 bytes, the drawing threads are
+	     held up for no longer than that. lockAll is also for the writers that
+	     change the whole screen at once.
+
+	     Don't flush (LCDDisplay, LCDSwapBuffers) while holding page locks, the
+	     flush takes all of them.
+*/
+
+public class PageLocks {
+
+	private final int height;
+	private final ReentrantLock locks[];
+
+	public PageLocks(int height) {
+		this.height = height;
+		this.locks = new ReentrantLock[height / 8];
+		for (int p = 0; p < locks.length; p++)
+			locks[p] = new ReentrantLock();
+	}
+
+	/**
+	 * Locks the pages of rows y0..y1, in any order and clipped to the buffer
+	 *
+	 * @param y0
+	 * @param y1
+	 * @return what to give to unlock
+	 */
+	public int lockRows(int y0, int y1) {
+		int lo = Math.min(y0, y1);
+		int hi = Math.max(y0, y1);
+		if (lo < 0)
+			lo = 0;
+		if (hi >= height)
+			hi = height - 1;
+		if (lo > hi)
+			return -1;
+
+		int p0 = lo >> 3;
+		int p1 = hi >> 3;
+		for (int p = p0; p <= p1; p++)
+			locks[p].lock();
+		return (p0 << 8) | p1;
+	}
+
+	/**
+	 * Unlocks what lockRows locked
+	 *
+	 * @param pages	the value returned by lockRows
+	 */
+	public void unlock(int pages) {
+		if (pages < 0)
+			return;
+		for (int p = pages & 0xFF; p >= pages >> 8; p--)
+			locks[p].unlock();
+	}
+
+	/**
+	 * Locks every page
+	 *
+	 * @return what to give to unlock
+	 */
+	public int lockAll() {
+		return lockRows(0, height - 1);
+	}
+}
@@ -0,0 +1,158 @@
+package com.jpcd8544;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : PanelManager.java
+
+	 Description :
+	     Drives several PCD8544 LCDs sharing the DIN, SCLK, D/C (and RST) lines,
+	     each with its own CS line. Every panel is a plain JPCD8544, so the whole
+	     drawing API is there through getPanel(i).
+
+	     flush sends the dirty panels one after the other, in a round robin
+	     order that starts after the last panel served, so a panel that changes
+	     all the time can't starve the others.
+
+	     The dirty panels are not batched into one bus session: each one gets a
+	     session of its own. A panel's bytes have to leave the bus transport
+	     (SpiDevTransport holds them until the session ends) before its CS goes
+	     high, so the write ends at every CS change anyway, and a session held
+	     across the panels would only keep the bus lock longer.
+
+	     Each panel takes the bus lock in its ChipSelectTransport, for the length
+	     of one transmit, after its own wire lock. flush never holds the bus
+	     lock around a panel, or it would take the locks in the opposite order
+	     of a panel flushed directly (LCDDisplay, a RenderScheduler...) and the
+	     two would deadlock. A panel busy flushing elsewhere is waited for
+	     without keeping the bus from the others.
+
+		 Connection example (2 panels):
+		 LCD pins      Raspberry Pi
+		 LCD3 - CLK    P16 - GPIO4    (both panels)
+		 LCD4 - Din    P12 - GPIO1    (both panels)
+		 LCD5 - D/C    P15 - GPIO3    (both panels)
+		 LCD7 - RST    P13 - GPIO2    (both panels)
+		 LCD6 - CS     P11 - GPIO0    (panel 0)
+		 LCD6 - CS     P18 - GPIO5    (panel 1)
+*/
+
+public class PanelManager {
+
+	private final LCDTransport bus;
+	private final ReentrantLock busLock = new ReentrantLock();
+	private final List<JPCD8544> panels = new ArrayList<JPCD8544>();
+
+	// the panel after the last one flushed, where the next flush starts
+	private int next;
+
+	/**
+	 * Panels bit-banged on shared GPIO pins
+	 *
+	 * @param dinPin
+	 * @param sclkPin
+	 * @param dcPin
+	 * @param rstPin	shared reset line, may be null
+	 */
+	public PanelManager(GpioPinDigitalOutput dinPin,
+						GpioPinDigitalOutput sclkPin,
+						GpioPinDigitalOutput dcPin,
+						GpioPinDigitalOutput rstPin) {
+		this(new BitBangTransport(dinPin, sclkPin, dcPin), rstPin);
+	}
+
+	/**
+	 * Panels on any shared transport. The shared reset line is pulsed once here,
+	 * so add the panels afterwards.
+	 *
+	 * @param busTransport
+	 * @param rstPin		shared reset line, may be null
+	 */
+	public PanelManager(LCDTransport busTransport, GpioPinDigitalOutput rstPin) {
+		bus = busTransport;
+		if (rstPin != null) {
+			// toggle RST low to reset every panel at once
+			rstPin.low();
+			LCDTiming.delayMs(500);
+			rstPin.high();
+		}
+	}
+
+	/**
+	 * Adds and initializes a panel
+	 *
+	 * @param csPin		the chip select of the new panel
+	 * @param contrast
+	 * @return the panel number
+	 */
+	public synchronized int addPanel(GpioPinDigitalOutput csPin, int contrast) {
+		JPCD8544 lcd = new JPCD8544();
+		lcd.LCDInit(new ChipSelectTransport(bus, csPin, busLock), null, contrast);
+		panels.add(lcd);
+		return panels.size() - 1;
+	}
+
+	public synchronized JPCD8544 getPanel(int panel) {
+		return panels.get(panel);
+	}
+
+	public synchronized int getPanelCount() {
+		return panels.size();
+	}
+
+	/**
+	 * Sends every dirty panel
+	 *
+	 * @return how many panels were sent
+	 */
+	public int flush() {
+		return flush(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Sends up to maxPanels dirty panels, starting after the panel served last
+	 *
+	 * @param maxPanels
+	 * @return how many panels were sent
+	 */
+	public synchronized int flush(int maxPanels) {
+		int n = panels.size();
+		int first = next;
+		int sent = 0;
+
+		for (int i = 0; i < n && sent < maxPanels; i++) {
+			int panel = (first + i) % n;
+			JPCD8544 lcd = panels.get(panel);
+			if (lcd.LCDIsDirty()) {
+				lcd.LCDDisplay();
+				sent++;
+				next = (panel + 1) % n;
+			}
+		}
+		return sent;
+	}
+
+	/**
+	 * Forces a full refresh of every panel
+	 */
+	public synchronized void displayAll() {
+		for (JPCD8544 lcd : panels) {
+			lcd.LCDDisplayAll();
+		}
+	}
+
+	/**
+	 * Releases the panels and the shared bus
+	 */
+	public synchronized void close() {
+		for (JPCD8544 lcd : panels) {
+			lcd.LCDClose();
+		}
+		panels.clear();
+		bus.close();
+	}
+}
@@ -0,0 +1,102 @@
+package com.jpcd8544;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+	 Name		 : PbmSink.java
+
+	 Description :
+	     Writes the frames as binary PBM (P4) images, the simplest format any
+	     image viewer opens: a short text header, then the rows, 8 pixels per
+	     byte, leftmost pixel in the top bit, 1 is black.
+
+	     Given a file, the sink keeps it holding the latest frame. Each frame
+	     goes to a temporary file renamed over the old one, so a viewer never
+	     reads half a picture. Given a stream, the frames are written one after
+	     the other, which netpbm tools read as a multi image file.
+*/
+
+public class PbmSink implements FrameSink {
+
+	private final File file;
+	private final OutputStream out;
+	private byte image[];
+
+	/**
+	 * @param file	overwritten with each frame
+	 */
+	public PbmSink(File file) {
+		this.file = file;
+		this.out = null;
+	}
+
+	/**
+	 * @param out	gets the frames one after the other
+	 */
+	public PbmSink(OutputStream out) {
+		this.file = null;
+		this.out = out;
+	}
+
+	public void write(byte[] frame, int width, int height, long sequence) throws IOException {
+		image = encode(frame, width, height, image);
+
+		if (out != null) {
+			out.write(image);
+			out.flush();
+			return;
+		}
+
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream f = new FileOutputStream(tmp);
+		try {
+			f.write(image);
+		} finally {
+			f.close();
+		}
+		if (!tmp.renameTo(file))
+			throw new IOException("Can't rename " + tmp + " to " + file);
+	}
+
+	public void close() throws IOException {
+		if (out != null)
+			out.close();
+	}
+
+	/**
+	 * Encodes a frame as a P4 image
+	 *
+	 * @param frame		packed like the display RAM
+	 * @param width
+	 * @param height
+	 * @param image		reused if it has the right size, may be null
+	 * @return the image, header included
+	 */
+	public static byte[] encode(byte[] frame, int width, int height, byte[] image) {
+		byte header[] = ("P4\n" + width + " " + height + "\n").getBytes();
+		int rowBytes = (width + 7) / 8;
+		int size = header.length + rowBytes * height;
+		if (image == null || image.length != size)
+			image = new byte[size];
+
+		System.arraycopy(header, 0, image, 0, header.length);
+		int i = header.length;
+		for (int y = 0; y < height; y++) {
+			int page = (y >> 3) * width;
+			int bit = 1 << (y & 7);
+			for (int x = 0; x < width; x += 8) {
+				int b = 0;
+				for (int k = 0; k < 8; k++) {
+					b <<= 1;
+					if (x + k < width && (frame[page + x + k] & bit) != 0)
+						b |= 1;
+				}
+				image[i++] = (byte) b;
+			}
+		}
+		return image;
+	}
+}
@@ -0,0 +1,64 @@
+package com.jpcd8544;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/*
+	 Name		 : PngSink.java
+
+	 Description :
+	     Writes the frames as a 1 bit PNG through ImageIO, optionally scaled up
+	     so the 84x48 picture can be read on a monitor. Like PbmSink, the file
+	     always holds the latest complete frame.
+*/
+
+public class PngSink implements FrameSink {
+
+	// palette index 0 is white (pixel off), 1 is black
+	private static final IndexColorModel LCD_COLORS = new IndexColorModel(1, 2,
+			new byte[] { (byte) 0xFF, 0 }, new byte[] { (byte) 0xFF, 0 }, new byte[] { (byte) 0xFF, 0 });
+
+	private final File file;
+	private final int scale;
+	private BufferedImage image;
+
+	public PngSink(File file) {
+		this(file, 1);
+	}
+
+	/**
+	 * @param file	overwritten with each frame
+	 * @param scale	each LCD pixel becomes scale x scale image pixels
+	 */
+	public PngSink(File file, int scale) {
+		this.file = file;
+		this.scale = Math.max(1, scale);
+	}
+
+	public void write(byte[] frame, int width, int height, long sequence) throws IOException {
+		if (image == null || image.getWidth() != width * scale || image.getHeight() != height * scale)
+			image = new BufferedImage(width * scale, height * scale, BufferedImage.TYPE_BYTE_BINARY, LCD_COLORS);
+
+		WritableRaster raster = image.getRaster();
+		for (int y = 0; y < height * scale; y++) {
+			int page = (y / scale >> 3) * width;
+			int bit = 1 << (y / scale & 7);
+			for (int x = 0; x < width * scale; x++)
+				raster.setSample(x, y, 0, (frame[page + x / scale] & bit) != 0 ? 1 : 0);
+		}
+
+		File tmp = new File(file.getPath() + ".tmp");
+		if (!ImageIO.write(image, "png", tmp))
+			throw new IOException("No PNG writer available");
+		if (!tmp.renameTo(file))
+			throw new IOException("Can't rename " + tmp + " to " + file);
+	}
+
+	public void close() {
+	}
+}
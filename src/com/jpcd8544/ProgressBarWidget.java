@@ -0,0 +1,47 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : ProgressBarWidget.java
+
+	 Description :
+	     A framed horizontal bar filled in proportion of a value between min
+	     and max. It's repainted only when the filled width moves by a pixel,
+	     not on every change of the value.
+*/
+
+public class ProgressBarWidget extends Widget {
+
+	private final int min;
+	private final int max;
+	private int value;
+	private int filled;
+
+	public ProgressBarWidget(int x, int y, int width, int height, int min, int max) {
+		super(x, y, width, height);
+		this.min = min;
+		this.max = max;
+		this.value = min;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * @param v	clamped to min..max
+	 */
+	public void setValue(int v) {
+		value = (v < min) ? min : (v > max) ? max : v;
+		int f = max > min ? (int) ((long) (value - min) * (width - 2) / (max - min)) : 0;
+		if (f != filled) {
+			filled = f;
+			invalidate();
+		}
+	}
+
+	protected void paint(JPCD8544 lcd) {
+		lcd.LCDDrawRect(x, y, width, height, lcd.BLACK);
+		if (filled > 0)
+			lcd.LCDFillRect(x + 1, y + 1, filled, height - 2, lcd.BLACK);
+	}
+}
@@ -0,0 +1,256 @@
+package com.jpcd8544;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+	 Name		 : RenderScheduler.java
+
+	 Description :
+	     Flushes an LCD at a steady frame rate, however many threads ask for it.
+	     Producers call requestDisplay() instead of LCDDisplay(). All the
+	     requests made during a frame interval are merged into one flush, done
+	     by the render thread at the next frame time.
+
+	     What a producer does while its frame waits depends on the policy:
+	     - DROP returns right away, the request joins the next frame,
+	     - BLOCK waits until a frame started after the request is on the LCD,
+	       which slows down producers to the frame rate.
+*/
+
+public class RenderScheduler {
+
+	// policies
+	public static final int DROP = 0;
+	public static final int BLOCK = 1;
+
+	// weight of the last frame interval in the achieved rate
+	private static final double SMOOTHING = 0.1;
+
+	private final Runnable flush;
+	private final long intervalNanos;
+	private final int policy;
+	private final Thread thread;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition requested = lock.newCondition();
+	private final Condition flushed = lock.newCondition();
+
+	private boolean pending;
+	private boolean running = true;
+	private long started;		// frames taken by the render thread
+	private long completed;		// frames on the LCD
+	private long requests;
+	private long coalesced;
+	private long lastFlush;
+	private double averageInterval;
+	private RuntimeException lastError;
+
+	/**
+	 * Schedules lcd.LCDDisplay()
+	 *
+	 * @param lcd
+	 * @param fps		frames per second at most
+	 * @param policy	DROP or BLOCK
+	 */
+	public RenderScheduler(final JPCD8544 lcd, double fps, int policy) {
+		this(new Runnable() {
+			public void run() {
+				lcd.LCDDisplay();
+			}
+		}, fps, policy);
+	}
+
+	/**
+	 * Schedules any flush, e.g. PanelManager.flush()
+	 *
+	 * @param flush
+	 * @param fps		frames per second at most
+	 * @param policy	DROP or BLOCK
+	 */
+	public RenderScheduler(Runnable flush, double fps, int policy) {
+		if (fps <= 0)
+			throw new IllegalArgumentException("The frame rate must be positive");
+		this.flush = flush;
+		this.intervalNanos = (long) (1e9 / fps);
+		this.policy = policy;
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				renderLoop();
+			}
+		}, "PCD8544 render");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Asks for the LCD to be refreshed with the next frame
+	 */
+	public void requestDisplay() {
+		lock.lock();
+		try {
+			if (!running)
+				throw new IllegalStateException("The render scheduler is closed");
+			requests++;
+			if (pending)
+				coalesced++;
+			pending = true;
+			requested.signal();
+
+			if (policy == BLOCK) {
+				// the next frame to start holds this request
+				long frame = started + 1;
+				while (completed < frame && running)
+					flushed.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void renderLoop() {
+		long next = System.nanoTime();
+
+		while (true) {
+			long frame;
+			lock.lock();
+			try {
+				while (!pending && running)
+					requested.awaitUninterruptibly();
+				if (!running && !pending)
+					return;
+			} finally {
+				lock.unlock();
+			}
+
+			// requests keep coming in until the frame time
+			long wait = next - System.nanoTime();
+			if (wait > 0)
+				LCDTiming.delayNanos(wait);
+
+			lock.lock();
+			try {
+				pending = false;
+				frame = ++started;
+			} finally {
+				lock.unlock();
+			}
+
+			RuntimeException error = null;
+			try {
+				flush.run();
+			} catch (RuntimeException e) {
+				error = e;
+			}
+
+			long now = System.nanoTime();
+			lock.lock();
+			try {
+				if (lastFlush != 0) {
+					double interval = now - lastFlush;
+					averageInterval = averageInterval == 0 ? interval
+							: averageInterval + SMOOTHING * (interval - averageInterval);
+				}
+				lastFlush = now;
+				if (error != null)
+					lastError = error;
+				completed = frame;
+				flushed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+
+			// late frames don't pile up, the schedule starts over from now
+			next = Math.max(next + intervalNanos, now);
+		}
+	}
+
+	/**
+	 * Frames sent to the LCD
+	 */
+	public long getFrames() {
+		lock.lock();
+		try {
+			return completed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Calls to requestDisplay
+	 */
+	public long getRequests() {
+		lock.lock();
+		try {
+			return requests;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Requests merged into a frame that was already asked for, each one a
+	 * flush saved
+	 */
+	public long getSkippedFlushes() {
+		lock.lock();
+		try {
+			return coalesced;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The frame rate of the recent frames, 0 until there are two of them. It
+	 * drops below the target when the producers are slower than the frame rate
+	 * or the flushes take longer than the interval.
+	 */
+	public double getAchievedFps() {
+		lock.lock();
+		try {
+			return averageInterval == 0 ? 0 : 1e9 / averageInterval;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public double getTargetFps() {
+		return 1e9 / intervalNanos;
+	}
+
+	/**
+	 * The last exception thrown by a flush, or null. The render thread goes on
+	 * after a failed flush.
+	 */
+	public RuntimeException getLastError() {
+		lock.lock();
+		try {
+			return lastError;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sends the pending frame, if any, and stops the render thread. Blocked
+	 * producers are released.
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			running = false;
+			requested.signal();
+			flushed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(1) + TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
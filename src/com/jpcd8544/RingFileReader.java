@@ -0,0 +1,121 @@
+package com.jpcd8544;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+	 Name		 : RingFileReader.java
+
+	 Description :
+	     Tails a ring file written by RingFileSink, typically from another
+	     process. poll() returns the latest frame when there's a new one.
+
+	     Run it on its own to watch a panel from a terminal:
+	       java -cp jpcd8544.jar com.jpcd8544.RingFileReader /tmp/lcd.ring
+*/
+
+public class RingFileReader {
+
+	private static final int RETRIES = 8;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer ring;
+	private final int width;
+	private final int height;
+	private final int slots;
+	private final int slotSize;
+	private long last;
+
+	public RingFileReader(String path) {
+		try {
+			file = new RandomAccessFile(path, "r");
+			ring = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		} catch (IOException e) {
+			throw new LCDException("Can't map the ring file " + path, e);
+		}
+		if (ring.capacity() < RingFileSink.HEADER_SIZE || ring.getInt(0) != RingFileSink.MAGIC)
+			throw new LCDException(path + " is not a ring file");
+		if (ring.getInt(4) != RingFileSink.VERSION)
+			throw new LCDException(path + " has version " + ring.getInt(4));
+		width = ring.getInt(8);
+		height = ring.getInt(12);
+		slots = ring.getInt(16);
+		slotSize = ring.getInt(20);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Copies the latest frame into dst if it's newer than the last one read
+	 *
+	 * @param dst	width*height/8 bytes
+	 * @return the sequence of the frame, or 0 if there's nothing new
+	 */
+	public long poll(byte[] dst) {
+		for (int tries = 0; tries < RETRIES; tries++) {
+			long latest = ring.getLong(RingFileSink.LATEST);
+			if (latest == 0 || latest == last)
+				return 0;
+
+			int slot = RingFileSink.HEADER_SIZE + (int) (latest % slots) * slotSize;
+			if (ring.getLong(slot) != latest)
+				continue;
+			ByteBuffer data = ring.duplicate();
+			data.position(slot + 8);
+			data.get(dst);
+			// the writer came round to this slot while we were copying
+			if (ring.getLong(slot) != latest)
+				continue;
+
+			last = latest;
+			return latest;
+		}
+		return 0;
+	}
+
+	public void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			throw new LCDException("Can't close the ring file", e);
+		}
+	}
+
+	/**
+	 * Prints the frames of a ring file as text, # for black pixels
+	 */
+	public static void main(String args[]) throws InterruptedException {
+		if (args.length != 1) {
+			System.err.println("usage: RingFileReader <ring file>");
+			System.exit(1);
+		}
+		RingFileReader reader = new RingFileReader(args[0]);
+		byte frame[] = new byte[reader.getWidth() * reader.getHeight() / 8];
+		StringBuilder text = new StringBuilder();
+
+		while (true) {
+			long seq = reader.poll(frame);
+			if (seq == 0) {
+				Thread.sleep(50);
+				continue;
+			}
+			text.setLength(0);
+			text.append("\033[H\033[2Jframe ").append(seq).append('\n');
+			for (int y = 0; y < reader.getHeight(); y++) {
+				for (int x = 0; x < reader.getWidth(); x++)
+					text.append((frame[x + (y / 8) * reader.getWidth()] & (1 << (y % 8))) != 0 ? '#' : '.');
+				text.append('\n');
+			}
+			System.out.print(text);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.jpcd8544;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+	 Name		 : RingFileSink.java
+
+	 Description :
+	     Writes the frames into a ring of slots in a memory mapped file, for a
+	     viewer on the same machine to tail (see RingFileReader). Nothing is
+	     opened or closed per frame, a frame is one copy into the page cache.
+
+	     Layout, big endian:
+	       0  int   MAGIC
+	       4  int   VERSION
+	       8  int   width
+	       12 int   height
+	       16 int   slot count
+	       20 int   slot size, 8 + width*height/8
+	       24 long  sequence of the latest complete frame, 0 if none
+	       32       the slots: long sequence, then the frame bytes
+	     Frame n goes to slot n % slots. The slot sequence is zeroed while the
+	     frame is being copied, so a reader that sees the same sequence before
+	     and after its own copy got a complete frame.
+*/
+
+public class RingFileSink implements FrameSink {
+
+	public static final int MAGIC = 0x5043444D;	// "PCDM"
+	public static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 32;
+	static final int LATEST = 24;
+
+	private final RandomAccessFile file;
+	private final int width;
+	private final int height;
+	private final int slots;
+	private final int slotSize;
+	private final MappedByteBuffer ring;
+
+	// written after each step of a frame, see MappedGpioRegisters
+	private volatile long fence;
+
+	/**
+	 * Creates (or overwrites) the ring file
+	 *
+	 * @param path
+	 * @param width		of the frames, LCDWIDTH
+	 * @param height	of the frames, LCDHEIGHT
+	 * @param slots		frames kept, a slow reader may skip frames but never sees a torn one
+	 */
+	public RingFileSink(String path, int width, int height, int slots) {
+		this.width = width;
+		this.height = height;
+		this.slots = slots;
+		this.slotSize = 8 + width * height / 8;
+		try {
+			file = new RandomAccessFile(path, "rw");
+			file.setLength(HEADER_SIZE + (long) slots * slotSize);
+			ring = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * slotSize);
+		} catch (IOException e) {
+			throw new LCDException("Can't map the ring file " + path, e);
+		}
+		ring.putInt(4, VERSION);
+		ring.putInt(8, width);
+		ring.putInt(12, height);
+		ring.putInt(16, slots);
+		ring.putInt(20, slotSize);
+		ring.putLong(LATEST, 0);
+		for (int i = 0; i < slots; i++)
+			ring.putLong(HEADER_SIZE + i * slotSize, 0);
+		// the magic last, a reader takes the file once it's there
+		fence = 0;
+		ring.putInt(0, MAGIC);
+		fence = 0;
+	}
+
+	public void write(byte[] frame, int width, int height, long sequence) throws IOException {
+		if (width != this.width || height != this.height)
+			throw new IOException("Frame is " + width + "x" + height + ", the ring file " + this.width + "x" + this.height);
+
+		int slot = HEADER_SIZE + (int) (sequence % slots) * slotSize;
+		ring.putLong(slot, 0);
+		fence = sequence;
+		// one bulk copy through a view, the ring position stays put
+		ByteBuffer data = ring.duplicate();
+		data.position(slot + 8);
+		data.put(frame);
+		fence = sequence;
+		ring.putLong(slot, sequence);
+		fence = sequence;
+		ring.putLong(LATEST, sequence);
+		fence = sequence;
+	}
+
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,161 @@
+package com.jpcd8544;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : SpiDevTransport.java
+
+	 Description :
+	     Hardware SPI through the Linux spidev driver (/dev/spidevB.C). The SPI
+	     controller clocks the bits out by itself, so a whole page (or frame) of
+	     data is handed to the kernel in a single write.
+
+	     The PCD8544 D/C line is not part of SPI, so it's still a GPIO pin. Inside
+	     a session, consecutive bytes of the same kind (command or data) are
+	     collected and written together, and D/C is only switched when the kind
+	     changes.
+
+	     SPI mode 0 and the clock speed (4MHz max for the PCD8544) are the spidev
+	     defaults of the device node, set them with the dtoverlay/kernel config.
+	     Any writable file or FIFO may stand in for the device node, in that case
+	     the D/C pin may be null.
+
+		 Recommended connection (SPI0, CE0):
+		 LCD pins      Raspberry Pi
+		 LCD3 - CLK    P23 - SCLK
+		 LCD4 - Din    P19 - MOSI
+		 LCD5 - D/C    P15 - GPIO3
+		 LCD6 - CS     P24 - CE0
+*/
+
+public class SpiDevTransport implements LCDTransport {
+
+	// spidev refuses transfers bigger than its bufsiz module parameter (4096 by default)
+	private static final int MAX_TRANSFER = 4096;
+
+	private static final int NONE = -1;
+	private static final int COMMAND = 0;
+	private static final int DATA = 1;
+
+	private final FileOutputStream out;
+	private final FileChannel channel;
+	private final GpioPinDigitalOutput _dc;
+
+	private final ByteBuffer pending = ByteBuffer.allocate(MAX_TRANSFER);
+	private int pendingKind = NONE;
+	private int dcState = NONE;
+	private boolean session;
+
+	// a command splits the write in two extra system calls, about 32 bytes at 4MHz
+	private int restartCost = 32;
+
+	/**
+	 * Opens the spidev device node (or a stand-in file)
+	 *
+	 * @param device	e.g. /dev/spidev0.0
+	 * @param dcPin		D/C pin, or null when there is no LCD behind the device
+	 */
+	public SpiDevTransport(String device, GpioPinDigitalOutput dcPin) {
+		try {
+			out = new FileOutputStream(device);
+		} catch (IOException e) {
+			throw new LCDException("Can't open " + device, e);
+		}
+		channel = out.getChannel();
+		_dc = dcPin;
+	}
+
+	public void begin() {
+		session = true;
+	}
+
+	public void command(int c) {
+		put(COMMAND, c);
+	}
+
+	public void data(int c) {
+		put(DATA, c);
+	}
+
+	public void data(byte[] buf, int off, int len) {
+		while (len > 0) {
+			if (pendingKind != DATA || !pending.hasRemaining()) {
+				flush();
+				pendingKind = DATA;
+			}
+			int n = Math.min(len, pending.remaining());
+			pending.put(buf, off, n);
+			off += n;
+			len -= n;
+		}
+		if (!session)
+			flush();
+	}
+
+	public int getRestartCost() {
+		return restartCost;
+	}
+
+	/**
+	 * Tunes the cost model for the actual SPI clock and system call overhead
+	 *
+	 * @param cost	data byte times lost to one command between data bytes
+	 */
+	public void setRestartCost(int cost) {
+		restartCost = cost;
+	}
+
+	public void end() {
+		flush();
+		session = false;
+	}
+
+	public void close() {
+		try {
+			flush();
+			out.close();
+		} catch (IOException e) {
+			throw new LCDException("Can't close the SPI device", e);
+		}
+	}
+
+	private void put(int kind, int c) {
+		if (pendingKind != kind || !pending.hasRemaining()) {
+			flush();
+			pendingKind = kind;
+		}
+		pending.put((byte) c);
+		if (!session)
+			flush();
+	}
+
+	// D/C has to be settled before the bytes go out, so it's switched right before the write
+	private void flush() {
+		if (pending.position() == 0)
+			return;
+
+		if (_dc != null && dcState != pendingKind) {
+			if (pendingKind == DATA)
+				_dc.high();
+			else
+				_dc.low();
+			dcState = pendingKind;
+		}
+
+		pending.flip();
+		try {
+			while (pending.hasRemaining())
+				channel.write(pending);
+		} catch (IOException e) {
+			throw new LCDException("SPI write failed", e);
+		} finally {
+			pending.clear();
+			pendingKind = NONE;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : Sprite.java
+
+	 Description :
+	     A small bitmap prepared for fast placement. A page packed bitmap only
+	     lines up with the memory buffer when y is a multiple of 8, anywhere else
+	     each column has to be shifted across two pages. The sprite keeps the
+	     bitmap (and its mask) already shifted down by 0 to 7 rows, so drawing it
+	     at any y is plain byte operations, one per column and page.
+
+	     The sprite is only the picture, SpriteLayer puts it on the screen.
+*/
+
+public class Sprite {
+
+	private final int width;
+	private final int height;
+
+	// [shift][page * width + column], the bitmap moved down by shift rows
+	private final byte image[][] = new byte[8][];
+	private final byte mask[][] = new byte[8][];
+
+	/**
+	 * @param bitmap	page packed like LCDBlit: width bytes per 8 rows, bit 0 on top
+	 * @param mask		same layout, the pixels the sprite covers. null to cover
+	 *					only its black pixels, the white ones showing the background
+	 * @param width
+	 * @param height
+	 */
+	public Sprite(byte[] bitmap, byte[] mask, int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		int pages = (height + 7) / 8;
+		for (int shift = 0; shift < 8; shift++) {
+			int shifted = getPages(shift);
+			image[shift] = new byte[shifted * width];
+			this.mask[shift] = new byte[shifted * width];
+
+			for (int p = 0; p < pages; p++) {
+				// the last page of the bitmap may be partly used
+				int rows = p == pages - 1 ? FrameBuffer.BOTTOM_MASK[(height - 1) & 7] : 0xFF;
+				for (int x = 0; x < width; x++) {
+					int m = (mask == null ? bitmap[p * width + x] : mask[p * width + x]) & rows;
+					int b = bitmap[p * width + x] & m;
+					put(shift, p, x, b, m);
+				}
+			}
+		}
+	}
+
+	// ORs one source byte into the shifted variant, splitting it over two pages
+	private void put(int shift, int page, int x, int b, int m) {
+		int i = page * width + x;
+		image[shift][i] |= (byte) (b << shift);
+		mask[shift][i] |= (byte) (m << shift);
+		if (shift > 0 && page + 1 < getPages(shift)) {
+			image[shift][i + width] |= (byte) (b >> (8 - shift));
+			mask[shift][i + width] |= (byte) (m >> (8 - shift));
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * The pages covered by the sprite drawn shift rows below a page boundary
+	 *
+	 * @param shift	y & 7
+	 */
+	public int getPages(int shift) {
+		return (height + shift + 7) / 8;
+	}
+
+	/**
+	 * The bitmap shifted down by shift rows, getPages(shift) pages of width
+	 * bytes. Only the covered pixels may be set.
+	 *
+	 * @param shift	y & 7
+	 */
+	byte[] getImage(int shift) {
+		return image[shift];
+	}
+
+	/**
+	 * The mask shifted down by shift rows
+	 *
+	 * @param shift	y & 7
+	 */
+	byte[] getMask(int shift) {
+		return mask[shift];
+	}
+}
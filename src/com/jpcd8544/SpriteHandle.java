@@ -0,0 +1,105 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : SpriteHandle.java
+
+	 Description :
+	     A sprite placed on a SpriteLayer: its position, its picture and how it
+	     is erased. The setters only record the change, the layer moves the
+	     sprite on its next update().
+*/
+
+public class SpriteHandle {
+
+	// erase modes
+	public static final int SAVE_UNDER = 0;		// the background under the sprite is kept and put back
+	public static final int XOR = 1;			// the sprite is XORed in, and XORed again to erase it
+
+	private final int mode;
+	private Sprite sprite;
+	private int x, y;
+	private boolean visible = true;
+	private boolean changed = true;
+
+	// where the sprite was last drawn, and what it covered (SAVE_UNDER)
+	boolean drawn;
+	Sprite drawnSprite;
+	int drawnX, drawnY;
+	byte under[];
+
+	SpriteHandle(Sprite sprite, int x, int y, int mode) {
+		this.sprite = sprite;
+		this.x = x;
+		this.y = y;
+		this.mode = mode;
+		this.under = new byte[sprite.getWidth() * sprite.getPages(7)];
+	}
+
+	public int getMode() {
+		return mode;
+	}
+
+	public Sprite getSprite() {
+		return sprite;
+	}
+
+	/**
+	 * Shows another picture, e.g. the next frame of an animation
+	 *
+	 * @param s
+	 */
+	public void setSprite(Sprite s) {
+		if (s == sprite)
+			return;
+		// under still holds the background of the old picture, the layer grows
+		// it when it draws the new one, after the erase
+		sprite = s;
+		changed = true;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public void moveTo(int x, int y) {
+		if (x == this.x && y == this.y)
+			return;
+		this.x = x;
+		this.y = y;
+		changed = true;
+	}
+
+	public void moveBy(int dx, int dy) {
+		moveTo(x + dx, y + dy);
+	}
+
+	public boolean isVisible() {
+		return visible;
+	}
+
+	public void setVisible(boolean on) {
+		if (on == visible)
+			return;
+		visible = on;
+		changed = true;
+	}
+
+	boolean isChanged() {
+		return changed;
+	}
+
+	void setChanged(boolean c) {
+		changed = c;
+	}
+
+	// makes under big enough for s, once the old background was put back
+	void fitUnder(Sprite s) {
+		int size = s.getWidth() * s.getPages(7);
+		if (under.length < size)
+			under = new byte[size];
+	}
+}
@@ -0,0 +1,175 @@
+package com.jpcd8544;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+	 Name		 : SpriteLayer.java
+
+	 Description :
+	     Moves sprites over the picture of an LCD without redrawing it. On each
+	     update() every sprite on the screen is erased, in the reverse order of
+	     drawing, and drawn again at its new place: a SAVE_UNDER sprite puts
+	     back the bytes it covered, a XOR sprite is XORed away. Only the old
+	     and new rectangles of the sprites that changed are marked for refresh.
+
+	     A sprite is drawn with the pre-shifted picture for its y (see Sprite),
+	     so placing or erasing it costs one byte operation per column and page
+	     it covers, whatever the alignment.
+
+	     To draw the background under the sprites, erase() them first. Drawing
+	     while they are on the screen is fine for XOR sprites, but a SAVE_UNDER
+	     sprite would put back the old background when it moves.
+
+	       SpriteLayer layer = new SpriteLayer(lcd);
+	       SpriteHandle ball = layer.add(new Sprite(BALL, null, 8, 8), 0, 0, SpriteHandle.SAVE_UNDER);
+	       ...
+	       ball.moveBy(1, 1);
+	       layer.update();
+	       lcd.LCDDisplay();
+*/
+
+public class SpriteLayer {
+
+	private final JPCD8544 lcd;
+	private final FrameBuffer frame;
+	private final byte buffer[];
+	private final int width;
+	private final int bufferPages;
+	private final List<SpriteHandle> sprites = new ArrayList<SpriteHandle>();
+
+	public SpriteLayer(JPCD8544 lcd) {
+		this.lcd = lcd;
+		this.frame = lcd.LCDGetFrameBuffer();
+		this.buffer = frame.getBytes();
+		this.width = frame.getWidth();
+		this.bufferPages = frame.getHeight() / 8;
+	}
+
+	/**
+	 * Adds a sprite over the ones added before, shown on the next update()
+	 *
+	 * @param s
+	 * @param x
+	 * @param y
+	 * @param mode	SpriteHandle.SAVE_UNDER or SpriteHandle.XOR
+	 */
+	public synchronized SpriteHandle add(Sprite s, int x, int y, int mode) {
+		SpriteHandle h = new SpriteHandle(s, x, y, mode);
+		sprites.add(h);
+		return h;
+	}
+
+	/**
+	 * Takes a sprite off the screen (on the next update) and out of the layer
+	 *
+	 * @param h
+	 */
+	public synchronized void remove(SpriteHandle h) {
+		h.setVisible(false);
+		update();
+		sprites.remove(h);
+	}
+
+	/**
+	 * Erases the sprites and draws them again where they are now
+	 */
+	public synchronized void update() {
+		PageLocks locks = lcd.LCDGetPageLocks();
+		int pages = locks.lockAll();
+		try {
+			int i;
+			for (i = sprites.size() - 1; i >= 0; i--)
+				erase(sprites.get(i));
+			for (i = 0; i < sprites.size(); i++)
+				draw(sprites.get(i));
+		} finally {
+			locks.unlock(pages);
+		}
+	}
+
+	/**
+	 * Takes every sprite off the screen, leaving the background as it was.
+	 * The next update() puts them back.
+	 */
+	public synchronized void erase() {
+		PageLocks locks = lcd.LCDGetPageLocks();
+		int pages = locks.lockAll();
+		try {
+			for (int i = sprites.size() - 1; i >= 0; i--) {
+				SpriteHandle h = sprites.get(i);
+				// changed, so the erased rectangle gets refreshed and the sprite redrawn
+				h.setChanged(true);
+				erase(h);
+			}
+		} finally {
+			locks.unlock(pages);
+		}
+	}
+
+	private void erase(SpriteHandle h) {
+		if (!h.drawn)
+			return;
+		apply(h, h.drawnSprite, h.drawnX, h.drawnY, false);
+		h.drawn = false;
+		if (h.isChanged())
+			mark(h.drawnSprite, h.drawnX, h.drawnY);
+	}
+
+	private void draw(SpriteHandle h) {
+		if (!h.isVisible()) {
+			h.setChanged(false);
+			return;
+		}
+		Sprite s = h.getSprite();
+		h.fitUnder(s);
+		apply(h, s, h.getX(), h.getY(), true);
+		h.drawn = true;
+		h.drawnSprite = s;
+		h.drawnX = h.getX();
+		h.drawnY = h.getY();
+		if (h.isChanged())
+			mark(s, h.drawnX, h.drawnY);
+		h.setChanged(false);
+	}
+
+	// draws (or erases) s at (x, y), clipped to the buffer
+	private void apply(SpriteHandle h, Sprite s, int x, int y, boolean draw) {
+		int w = s.getWidth();
+		int shift = y & 7;
+		int page = y >> 3;	// arithmetic shift, so negative y gives negative pages
+		int c0 = Math.max(0, -x);
+		int c1 = Math.min(w, width - x);
+		byte image[] = s.getImage(shift);
+		byte mask[] = s.getMask(shift);
+		byte under[] = h.under;
+		boolean xor = h.getMode() == SpriteHandle.XOR;
+
+		for (int q = 0; q < s.getPages(shift); q++) {
+			if (page + q < 0 || page + q >= bufferPages)
+				continue;
+			int d = (page + q) * width + x + c0;
+			int k = q * w + c0;
+			for (int i = c0; i < c1; i++, d++, k++) {
+				if (xor) {
+					buffer[d] ^= image[k];
+				} else if (draw) {
+					under[k] = buffer[d];
+					buffer[d] = (byte) ((buffer[d] & ~mask[k]) | image[k]);
+				} else {
+					buffer[d] = under[k];
+				}
+			}
+		}
+	}
+
+	// marks the rectangle of s at (x, y), clipped, for refresh
+	private void mark(Sprite s, int x, int y) {
+		int x0 = Math.max(x, 0);
+		int y0 = Math.max(y, 0);
+		int x1 = x + s.getWidth() - 1;
+		int y1 = y + s.getHeight() - 1;
+		if (x1 >= x0 && y1 >= y0)
+			lcd.updateBoundingBox(x0, y0, x1, y1);
+	}
+}
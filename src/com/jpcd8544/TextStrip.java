@@ -0,0 +1,38 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : TextStrip.java
+
+	 Description :
+	     A string rendered with an LCDFont, in the page layout of the display
+	     RAM, ready to be blitted. Strips are shared by TextStripCache, don't
+	     change their bytes.
+*/
+
+public class TextStrip {
+
+	private final byte bytes[];
+	private final int width;
+	private final int height;
+
+	public TextStrip(byte[] bytes, int width, int height) {
+		this.bytes = bytes;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * width bytes per page, (height + 7) / 8 pages
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
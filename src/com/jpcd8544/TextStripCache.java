@@ -0,0 +1,104 @@
+package com.jpcd8544;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+	 Name		 : TextStripCache.java
+
+	 Description :
+	     The most recently used text strips, keyed by text, font and color, so
+	     a label drawn over and over is rendered once and then blitted. When
+	     the cache is full the least recently used strip goes.
+*/
+
+public class TextStripCache {
+
+	private static final TextStripCache shared = new TextStripCache(64);
+
+	private final Map<Key, TextStrip> strips;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param capacity	strips kept
+	 */
+	public TextStripCache(final int capacity) {
+		strips = new LinkedHashMap<Key, TextStrip>(capacity * 4 / 3 + 1, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Key, TextStrip> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * The cache used by LCDDrawString with a font, shared by all the LCDs
+	 */
+	public static TextStripCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * The strip of text in font and color, rendered if it's not in the cache
+	 *
+	 * @param text
+	 * @param font
+	 * @param black	black text on white, or white on black
+	 */
+	public TextStrip get(String text, LCDFont font, boolean black) {
+		Key key = new Key(text, font, black);
+		synchronized (this) {
+			TextStrip s = strips.get(key);
+			if (s != null) {
+				hits++;
+				return s;
+			}
+			misses++;
+		}
+		// rendered outside the lock, two threads may render the same strip once
+		TextStrip s = font.render(text, black);
+		synchronized (this) {
+			strips.put(key, s);
+		}
+		return s;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized int size() {
+		return strips.size();
+	}
+
+	public synchronized void clear() {
+		strips.clear();
+	}
+
+	private static class Key {
+		final String text;
+		final LCDFont font;
+		final boolean black;
+
+		Key(String text, LCDFont font, boolean black) {
+			this.text = text;
+			this.font = font;
+			this.black = black;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return k.font == font && k.black == black && k.text.equals(text);
+		}
+
+		public int hashCode() {
+			return (text.hashCode() * 31 + System.identityHashCode(font)) * 2 + (black ? 1 : 0);
+		}
+	}
+}
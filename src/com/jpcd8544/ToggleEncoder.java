@@ -0,0 +1,190 @@
+package com.jpcd8544;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : ToggleEncoder.java
+
+	 Description :
+	     Turns the command/data byte stream into pin writes, keeping track of
+	     the level of each pin so only real transitions are written:
+	     - D/C is written when a command follows data or the other way round,
+	       not before every byte,
+	     - DIN is written when the next bit differs from the previous one, e.g.
+	       0x00 and 0xFF bytes leave it alone,
+	     - CS (if there is one) stays asserted for a whole transfer session.
+	     SCLK has to pulse for every bit, of course.
+
+	     The levels are only known as long as nothing else drives the pins.
+	     BitBangTransport.shiftOut and digitalWrite call pinsTouched(), and
+	     each encoder forgets its levels at the start of the next session.
+*/
+
+public class ToggleEncoder {
+
+	private static final int UNKNOWN = -1;
+
+	// pin writes of the plain bit-bang for one byte: DIN and both SCLK edges per bit
+	private static final int NAIVE_WRITES_PER_BYTE = 8 * 3;
+
+	// counts the pin writes done outside of the encoders
+	private static volatile int touched;
+
+	private final GpioPinDigitalOutput _din, _sclk, _dc, _cs;
+	private LCDTiming timing;
+
+	// current pin levels, UNKNOWN until written once
+	private int din = UNKNOWN, sclk = UNKNOWN, dc = UNKNOWN, cs = UNKNOWN;
+	// the value of touched when the levels were last known
+	private int seen;
+
+	private long writes;
+	private long saved;
+
+	/**
+	 * @param dinPin
+	 * @param sclkPin
+	 * @param dcPin
+	 * @param csPin		may be null when CS is tied low or driven elsewhere
+	 * @param timing	paces SCLK
+	 */
+	public ToggleEncoder(GpioPinDigitalOutput dinPin,
+						GpioPinDigitalOutput sclkPin,
+						GpioPinDigitalOutput dcPin,
+						GpioPinDigitalOutput csPin,
+						LCDTiming timing) {
+		_din = dinPin;
+		_sclk = sclkPin;
+		_dc = dcPin;
+		_cs = csPin;
+		this.timing = timing;
+	}
+
+	public void setTiming(LCDTiming timing) {
+		this.timing = timing;
+	}
+
+	public LCDTiming getTiming() {
+		return timing;
+	}
+
+	/**
+	 * Tells the encoders that some pin was written behind their back, so the
+	 * levels they remember may be wrong
+	 */
+	public static void pinsTouched() {
+		touched++;
+	}
+
+	/**
+	 * Forgets the pin levels if pins were touched since the last call. The
+	 * transport calls it when a session starts.
+	 */
+	public void sync() {
+		int t = touched;
+		if (t != seen) {
+			reset();
+			seen = t;
+		}
+	}
+
+	/**
+	 * Asserts (CS low) or releases (CS high) the LCD, if there is a CS pin
+	 *
+	 * @param selected
+	 */
+	public void select(boolean selected) {
+		if (_cs == null)
+			return;
+		if (!write(_cs, cs, selected ? 0 : 1))
+			saved++;
+		cs = selected ? 0 : 1;
+	}
+
+	/**
+	 * Sets D/C for the bytes that follow, high for data and low for commands
+	 *
+	 * @param data
+	 */
+	public void mode(boolean data) {
+		int level = data ? 1 : 0;
+		if (!write(_dc, dc, level))
+			saved++;
+		dc = level;
+	}
+
+	/**
+	 * Clocks out one byte, MSB first
+	 *
+	 * @param c
+	 * @param timeSpins	measure the time spent in the clock delays
+	 * @return the nanoseconds spent in the clock delays, if timeSpins is set
+	 */
+	public long send(int c, boolean timeSpins) {
+		long t, spin = 0;
+
+		if (sclk != 0) {
+			_sclk.low();
+			sclk = 0;
+			writes++;
+		}
+
+		for (int i = 0; i < 8; i++) {
+			int level = (c >> (7 - i)) & 1;
+			if (!write(_din, din, level))
+				saved++;
+			din = level;
+
+			_sclk.high();
+			t = timeSpins ? System.nanoTime() : 0;
+			timing.halfPeriod(); // clock speed, anyone? (LCD Max CLK input: 4MHz)
+			if (timeSpins)
+				spin += System.nanoTime() - t;
+			_sclk.low();
+		}
+		writes += 16;
+		return spin;
+	}
+
+	/**
+	 * Forgets the pin levels, see sync
+	 */
+	public void reset() {
+		din = sclk = dc = cs = UNKNOWN;
+	}
+
+	/**
+	 * Pin writes done so far
+	 */
+	public long getWrites() {
+		return writes;
+	}
+
+	/**
+	 * Pin writes skipped so far because the pin already had the level
+	 */
+	public long getWritesSaved() {
+		return saved;
+	}
+
+	/**
+	 * What the plain bit-bang would have written for n bytes, one D/C write each
+	 *
+	 * @param n
+	 */
+	public static long naiveWrites(long n) {
+		return n * (NAIVE_WRITES_PER_BYTE + 1);
+	}
+
+	// writes level to pin unless it's there already, returns true if written
+	private boolean write(GpioPinDigitalOutput pin, int current, int level) {
+		if (current == level)
+			return false;
+		if (level == 1)
+			pin.high();
+		else
+			pin.low();
+		writes++;
+		return true;
+	}
+}
@@ -0,0 +1,99 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : Widget.java
+
+	 Description :
+	     A retained mode element of the screen: it owns a rectangle, remembers
+	     what it shows and paints itself again only when that changes. The
+	     setters of the widgets compare the new value with the old one and call
+	     invalidate() only if it really differs.
+
+	     render() clears the rectangle and calls paint() for dirty widgets. The
+	     drawing goes through the LCD primitives, so the damage is recorded as
+	     usual and the next LCDDisplay sends just the repainted parts:
+
+	       ContainerWidget screen = new ContainerWidget(0, 0, 84, 48);
+	       LabelWidget title = new LabelWidget(0, 0, 84, "Boiler");
+	       NumberWidget temp = new NumberWidget(0, 16, 48, "%5.1fC");
+	       screen.add(title);
+	       screen.add(temp);
+	       ...
+	       temp.setValue(readTemperature());
+	       if (screen.render(lcd))
+	           lcd.LCDDisplay();
+*/
+
+public abstract class Widget {
+
+	protected final int x, y, width, height;
+
+	private ContainerWidget parent;
+	private boolean dirty = true;
+
+	protected Widget(int x, int y, int width, int height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public ContainerWidget getParent() {
+		return parent;
+	}
+
+	void setParent(ContainerWidget p) {
+		parent = p;
+	}
+
+	/**
+	 * Marks the widget for repainting on the next render
+	 */
+	public void invalidate() {
+		dirty = true;
+		if (parent != null)
+			parent.childInvalidated();
+	}
+
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Repaints the widget if it changed since the last render
+	 *
+	 * @param lcd
+	 * @return true if anything was painted
+	 */
+	public boolean render(JPCD8544 lcd) {
+		if (!dirty)
+			return false;
+		lcd.LCDFillRect(x, y, width, height, lcd.WHITE);
+		paint(lcd);
+		dirty = false;
+		return true;
+	}
+
+	/**
+	 * Draws the widget into its cleared rectangle
+	 *
+	 * @param lcd
+	 */
+	protected abstract void paint(JPCD8544 lcd);
+}
@@ -0,0 +1,124 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : BitBangTransportTest.java
+
+	 Description :
+	     Records the pin writes of BitBangTransport and samples DIN and D/C on
+	     each SCLK rising edge, the way the PCD8544 does, to get the bytes it
+	     would have received. The toggle encoder skips the writes that change
+	     nothing, the bytes must come out the same.
+*/
+
+public class BitBangTransportTest {
+
+	private int din, dc, cs = 1;
+	private int bits, current;
+	private int outsideCs;
+	private final List<Integer> received = new ArrayList<Integer>();
+	private final List<Integer> expected = new ArrayList<Integer>();
+
+	private GpioPinDigitalOutput dinPin, sclkPin, dcPin;
+	private BitBangTransport transport;
+
+	private GpioPinDigitalOutput pin(final String name) {
+		return (GpioPinDigitalOutput) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { GpioPinDigitalOutput.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method m, Object[] args) {
+						if (m.getName().equals("high"))
+							write(name, 1);
+						else if (m.getName().equals("low"))
+							write(name, 0);
+						return null;
+					}
+				});
+	}
+
+	private void write(String name, int level) {
+		if (name.equals("din")) {
+			din = level;
+		} else if (name.equals("dc")) {
+			dc = level;
+		} else if (name.equals("cs")) {
+			cs = level;
+		} else if (level == 1) {
+			// SCLK rising edge
+			if (cs != 0)
+				outsideCs++;
+			current = (current << 1) | din;
+			if (++bits == 8) {
+				received.add(Integer.valueOf(current | (dc != 0 ? GpioEdgeDecoder.DATA : 0)));
+				bits = current = 0;
+			}
+		}
+	}
+
+	@Before
+	public void setUp() {
+		dinPin = pin("din");
+		sclkPin = pin("sclk");
+		dcPin = pin("dc");
+		transport = new BitBangTransport(dinPin, sclkPin, dcPin, pin("cs"));
+	}
+
+	private void command(int c) {
+		transport.command(c);
+		expected.add(Integer.valueOf(c));
+	}
+
+	private void data(int d) {
+		transport.data(d);
+		expected.add(Integer.valueOf(d | GpioEdgeDecoder.DATA));
+	}
+
+	@Test
+	public void sendsCommandsAndData() {
+		byte frame[] = new byte[504];
+		Random r = new Random(1);
+		for (int i = 0; i < frame.length; i++)
+			frame[i] = (byte) (i % 3 == 0 ? r.nextInt(256) : 0);
+
+		transport.begin();
+		command(0x80);
+		command(0x40);
+		transport.data(frame, 0, frame.length);
+		for (byte b : frame)
+			expected.add(Integer.valueOf((b & 0xFF) | GpioEdgeDecoder.DATA));
+		command(0x40);
+		transport.end();
+
+		assertEquals(expected, received);
+		assertEquals(0, outsideCs);
+		assertTrue(transport.getEncoder().getWritesSaved() > 0);
+	}
+
+	@Test
+	public void pinsWrittenBehindItsBack() {
+		data(0xFF);
+		// someone else drives DIN and D/C, the encoder must not trust its copy
+		BitBangTransport.digitalWrite(dinPin, 0);
+		BitBangTransport.digitalWrite(dcPin, 0);
+		data(0xFF);
+		// D/C is left high by the last data byte
+		BitBangTransport.shiftOut(dinPin, sclkPin, BitBangTransport.MSBFIRST, 0x00);
+		expected.add(Integer.valueOf(GpioEdgeDecoder.DATA));
+		data(0x81);
+
+		assertEquals(expected, received);
+	}
+}
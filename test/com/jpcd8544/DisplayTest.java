@@ -0,0 +1,83 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+	 Name		 : DisplayTest.java
+
+	 Description :
+	     What LCDDisplay sends, on a transport that models the controller RAM:
+	     the LCD ends up holding the memory buffer, and only the bytes that
+	     changed go out, with or without the shadow buffer.
+*/
+
+public class DisplayTest {
+
+	private JPCD8544 lcd;
+	private PCD8544Model model;
+
+	@Before
+	public void setUp() {
+		model = new PCD8544Model();
+		lcd = new JPCD8544();
+		lcd.LCDInit(model, null, 0x3c);
+		lcd.LCDClear();
+		lcd.LCDDisplay();
+	}
+
+	private long sent(boolean all) {
+		long before = model.getData();
+		if (all)
+			lcd.LCDDisplayAll();
+		else
+			lcd.LCDDisplay();
+		assertArrayEquals(lcd.LCDGetFrameBuffer().getBytes(), model.getRam());
+		return model.getData() - before;
+	}
+
+	@Test
+	public void ramHoldsTheMemoryBuffer() {
+		lcd.LCDDrawCircle(42, 24, 20, lcd.BLACK);
+		lcd.LCDDrawLine(0, 0, 83, 47, lcd.BLACK);
+		sent(false);
+		lcd.LCDScroll(0, 5, 0);
+		sent(false);
+		assertEquals(504, sent(true));
+	}
+
+	@Test
+	public void shadowBufferSendsOnlyChangedBytes() {
+		assertEquals(0, sent(false));
+		lcd.LCDSetPixel(10, 10, lcd.BLACK);
+		assertEquals(1, sent(false));
+
+		// drawn over with the same pixels: dirty, but nothing to send
+		lcd.LCDFillRect(10, 10, 1, 1, lcd.BLACK);
+		assertEquals(0, sent(false));
+
+		lcd.LCDSetPixel(0, 2, lcd.BLACK);
+		lcd.LCDSetPixel(83, 2, lcd.BLACK);
+		assertEquals(2, sent(false));
+	}
+
+	@Test
+	public void withoutShadowBufferTheDirtyColumnsGoOut() {
+		lcd.LCDSetShadowDiff(false);
+		lcd.LCDSetPixel(10, 10, lcd.BLACK);
+		lcd.LCDSetPixel(20, 12, lcd.BLACK);
+		assertEquals(11, sent(false));
+		assertEquals(0, sent(false));
+	}
+
+	@Test
+	public void spiWriteGoesThroughTheTransport() {
+		lcd.LCDCommand(0x40 | 2);
+		lcd.LCDCommand(0x80 | 7);
+		lcd.LCDSpiWrite(0x1A5);
+		assertEquals(0xA5, model.getRam()[2 * 84 + 7] & 0xFF);
+	}
+}
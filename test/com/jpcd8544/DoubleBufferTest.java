@@ -0,0 +1,69 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+	 Name		 : DoubleBufferTest.java
+
+	 Description :
+	     Frames published with LCDSwapBuffers reach the LCD whole and in
+	     order, and frame listeners may publish the next frame themselves.
+*/
+
+public class DoubleBufferTest {
+
+	private JPCD8544 lcd;
+	private PCD8544Model model;
+
+	@Before
+	public void setUp() {
+		model = new PCD8544Model();
+		lcd = new JPCD8544();
+		lcd.LCDInit(model, null, 0x3c);
+		lcd.LCDSetDoubleBuffered(true);
+	}
+
+	@After
+	public void tearDown() {
+		lcd.LCDSetDoubleBuffered(false);
+	}
+
+	@Test
+	public void swappedFrameReachesTheRam() throws Exception {
+		lcd.LCDClear();
+		lcd.LCDFillRect(5, 5, 30, 20, lcd.BLACK);
+		byte drawn[] = lcd.LCDGetFrameBuffer().getBytes().clone();
+		assertEquals(Long.valueOf(1), lcd.LCDSwapBuffers().get(5, TimeUnit.SECONDS));
+		assertArrayEquals(drawn, model.getRam());
+	}
+
+	@Test(timeout = 10000)
+	public void listenerCanPublishTheNextFrame() throws Exception {
+		final CountDownLatch done = new CountDownLatch(10);
+		lcd.LCDAddFrameListener(new FrameListener() {
+			public void frameDisplayed(long frame) {
+				done.countDown();
+				if (frame < 10) {
+					lcd.LCDSetPixel((int) frame, 0, lcd.BLACK);
+					lcd.LCDDisplay();
+				}
+			}
+		});
+		lcd.LCDClear();
+		lcd.LCDSwapBuffers();
+		done.await();
+		lcd.LCDSwapBuffers().get();
+		byte ram[] = model.getRam();
+		assertEquals(0, ram[0]);
+		for (int x = 1; x < 10; x++)
+			assertEquals(1, ram[x]);
+	}
+}
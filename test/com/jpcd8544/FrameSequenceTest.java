@@ -0,0 +1,112 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+	 Name		 : FrameSequenceTest.java
+
+	 Description :
+	     Frames written with FrameSequenceWriter decode back to the same bytes,
+	     whatever record each one was stored as, and the damage covers every
+	     byte that changed.
+*/
+
+public class FrameSequenceTest {
+
+	private static final int FRAMES = 120;
+
+	private File file;
+	private byte frames[][];
+	private FrameSequence sequence;
+
+	@Before
+	public void setUp() throws IOException {
+		Random r = new Random(3);
+		FrameBuffer fb = new FrameBuffer(84, 48);
+		frames = new byte[FRAMES][];
+		for (int i = 0; i < FRAMES; i++) {
+			switch (i % 40) {
+			case 0:
+				fb.clear();
+				break;
+			case 10:
+				// unchanged, a SKIP for every page
+				break;
+			case 20:
+				r.nextBytes(fb.getBytes());
+				break;
+			case 30:
+				fb.fillRect(0, 0, 84, 48, 1);
+				break;
+			default:
+				fb.fillRect(r.nextInt(84), r.nextInt(48), r.nextInt(20), r.nextInt(20), r.nextInt(2));
+			}
+			frames[i] = fb.getBytes().clone();
+		}
+
+		file = File.createTempFile("anim", ".pcds");
+		FrameSequenceWriter w = new FrameSequenceWriter(file, 84, 48, 50);
+		w.setKeyFrameInterval(25);
+		for (byte f[] : frames)
+			w.addFrame(f);
+		w.close();
+		assertTrue(w.getCompressionRatio() > 1);
+		sequence = new FrameSequence(file.getPath());
+	}
+
+	@After
+	public void tearDown() {
+		sequence.close();
+		file.delete();
+	}
+
+	@Test
+	public void decodesEveryFrame() {
+		assertEquals(FRAMES, sequence.getFrameCount());
+		assertEquals(20000000L, sequence.getFrameNanos());
+
+		byte screen[] = new byte[504];
+		DamageTracker damage = new DamageTracker(84, 48);
+		for (int n = 0; n < FRAMES; n++) {
+			byte before[] = screen.clone();
+			damage.clear();
+			sequence.decode(n, screen, damage);
+			assertArrayEquals("frame " + n, frames[n], screen);
+
+			for (int i = 0; i < screen.length; i++) {
+				if (before[i] == screen[i])
+					continue;
+				int p = i / 84;
+				int x = i % 84;
+				assertTrue(damage.isPageDirty(p));
+				assertTrue(x >= damage.getColumnMin(p) && x <= damage.getColumnMax(p));
+			}
+			if (n % 40 == 10 && !sequence.isKeyFrame(n))
+				assertFalse(damage.isDirty());
+		}
+	}
+
+	@Test
+	public void seeksFromTheKeyFrame() {
+		assertEquals(50, sequence.getKeyFrame(60));
+		byte screen[] = new byte[504];
+		for (int n : new int[] { 0, 37, 99, FRAMES - 1 }) {
+			Arrays.fill(screen, (byte) 0x33);
+			for (int k = sequence.getKeyFrame(n); k <= n; k++)
+				sequence.decode(k, screen, null);
+			assertArrayEquals("frame " + n, frames[n], screen);
+		}
+	}
+}
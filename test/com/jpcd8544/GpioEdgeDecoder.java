@@ -0,0 +1,75 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : GpioEdgeDecoder.java
+
+	 Description :
+	     Plays back recorded GPIO register writes like the PCD8544 sees them: DIN
+	     is sampled on each rising edge of SCLK, and D/C is read with the 8th bit
+	     of each byte. This is the checker for GpioMemTransport.
+*/
+
+public class GpioEdgeDecoder {
+
+	/**
+	 * Set on the decoded values that were data bytes (D/C high)
+	 */
+	public static final int DATA = 0x100;
+
+	private final int din, sclk, dc;
+
+	/**
+	 * @param dinBcm	BCM GPIO numbers of the LCD pins
+	 * @param sclkBcm
+	 * @param dcBcm
+	 */
+	public GpioEdgeDecoder(int dinBcm, int sclkBcm, int dcBcm) {
+		this.din = 1 << dinBcm;
+		this.sclk = 1 << sclkBcm;
+		this.dc = 1 << dcBcm;
+	}
+
+	/**
+	 * Decodes the recorded writes, starting with every pin low
+	 *
+	 * @param recording
+	 * @return one value per byte received, command bytes as is and data bytes
+	 * 		with the DATA bit set. Bits of an unfinished byte are dropped.
+	 */
+	public int[] decode(RecordingGpioRegisters recording) {
+		int n = recording.getWriteCount();
+		int out[] = new int[n / 8 + 1];
+		int count = 0;
+		int levels = 0;
+		int value = 0, bits = 0;
+
+		for (int i = 0; i < n; i++) {
+			int offset = recording.getOffset(i);
+			int before = levels;
+			if (offset == GpioRegisters.GPSET0)
+				levels |= recording.getValue(i);
+			else if (offset == GpioRegisters.GPCLR0)
+				levels &= ~recording.getValue(i);
+			else
+				continue;
+
+			// rising edge of SCLK, MSB first
+			if ((before & sclk) == 0 && (levels & sclk) != 0) {
+				value = (value << 1) | ((levels & din) != 0 ? 1 : 0);
+				if (++bits == 8) {
+					if (count == out.length) {
+						int bigger[] = new int[out.length * 2];
+						System.arraycopy(out, 0, bigger, 0, count);
+						out = bigger;
+					}
+					out[count++] = value | ((levels & dc) != 0 ? DATA : 0);
+					value = bits = 0;
+				}
+			}
+		}
+
+		int result[] = new int[count];
+		System.arraycopy(out, 0, result, 0, count);
+		return result;
+	}
+}
@@ -0,0 +1,101 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+	 Name		 : GpioMemTransportTest.java
+
+	 Description :
+	     Runs GpioMemTransport on a temporary file standing in for
+	     /dev/gpiomem, records the register writes and decodes the SCLK edges
+	     back into the bytes the LCD would have received.
+*/
+
+public class GpioMemTransportTest {
+
+	// the recommended connection, in BCM numbers
+	private static final int DIN = 18;
+	private static final int SCLK = 23;
+	private static final int DC = 22;
+
+	private File file;
+	private RecordingGpioRegisters recording;
+	private GpioMemTransport transport;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("gpiomem", ".bin");
+		recording = new RecordingGpioRegisters(new MappedGpioRegisters(file.getPath()));
+		transport = new GpioMemTransport(recording, DIN, SCLK, DC, LCDTiming.MAX_SCLK_HZ);
+	}
+
+	@After
+	public void tearDown() {
+		transport.close();
+		file.delete();
+	}
+
+	@Test
+	public void decodesCommandsAndData() {
+		byte frame[] = new byte[504];
+		new Random(1).nextBytes(frame);
+
+		transport.begin();
+		transport.command(0x40);
+		transport.command(0x80);
+		transport.data(frame, 0, frame.length);
+		transport.data(0x5A);
+		transport.end();
+
+		int expected[] = new int[frame.length + 3];
+		expected[0] = 0x40;
+		expected[1] = 0x80;
+		for (int i = 0; i < frame.length; i++)
+			expected[i + 2] = (frame[i] & 0xFF) | GpioEdgeDecoder.DATA;
+		expected[frame.length + 2] = 0x5A | GpioEdgeDecoder.DATA;
+
+		assertArrayEquals(expected, new GpioEdgeDecoder(DIN, SCLK, DC).decode(recording));
+	}
+
+	@Test
+	public void displayedFrameReachesTheRam() {
+		JPCD8544 lcd = new JPCD8544();
+		lcd.LCDInit(transport, null, 0x3c);
+		lcd.LCDClear();
+		lcd.LCDFillRect(5, 3, 30, 20, lcd.BLACK);
+		lcd.LCDDrawString(40, 30, "Hi!");
+		lcd.LCDDrawLine(0, 47, 83, 0, lcd.BLACK);
+		lcd.LCDDisplay();
+
+		PCD8544Model model = new PCD8544Model();
+		int values[] = new GpioEdgeDecoder(DIN, SCLK, DC).decode(recording);
+		for (int i = 0; i < values.length; i++)
+			model.receive(values[i]);
+
+		assertArrayEquals(lcd.LCDGetFrameBuffer().getBytes(), model.getRam());
+	}
+
+	@Test
+	public void dcOnlyWrittenWhenItChanges() {
+		transport.data(0xFF);
+		int before = recording.getWriteCount();
+		transport.data(0xFF);
+		int one = recording.getWriteCount() - before;
+
+		before = recording.getWriteCount();
+		transport.command(0xFF);
+		int switched = recording.getWriteCount() - before;
+
+		// the D/C change rides on the register writes of the first bit
+		assertEquals(one, switched);
+	}
+}
@@ -0,0 +1,75 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+	 Name		 : GrayScreenTest.java
+
+	 Description :
+	     The gray refresh thread sends its sub-frames to the LCD, but the
+	     mirrors only see the committed picture, and once stopped the next
+	     LCDDisplay puts the whole memory buffer back.
+*/
+
+public class GrayScreenTest {
+
+	private JPCD8544 lcd;
+	private PCD8544Model model;
+	private GrayScreen gray;
+	private final List<byte[]> mirrored = new ArrayList<byte[]>();
+
+	@Before
+	public void setUp() {
+		model = new PCD8544Model();
+		lcd = new JPCD8544();
+		lcd.LCDInit(model, null, 0x3c);
+		lcd.LCDClear();
+		lcd.LCDFillRect(40, 8, 20, 30, lcd.BLACK);
+		lcd.LCDDisplay();
+		gray = new GrayScreen(lcd);
+		for (int level = 0; level < 4; level++)
+			gray.fillRect(level * 21, 0, 21, 48, level);
+		gray.commit();
+	}
+
+	private void runGray() throws InterruptedException {
+		gray.start(2000);
+		while (gray.getCycles() < 10)
+			Thread.sleep(1);
+		gray.stop();
+	}
+
+	@Test(timeout = 20000)
+	public void mirrorsGetThePictureOnce() throws Exception {
+		FrameMirror m = lcd.LCDAddMirror(new FrameSink() {
+			public void write(byte[] frame, int width, int height, long sequence) {
+				mirrored.add(frame.clone());
+			}
+
+			public void close() {
+			}
+		}, 0);
+		runGray();
+		lcd.LCDRemoveMirror(m);
+
+		assertEquals(1, m.getFramesOffered());
+		assertEquals(1, mirrored.size());
+		assertArrayEquals(gray.getHighPlane(), mirrored.get(0));
+	}
+
+	@Test(timeout = 20000)
+	public void displayAfterStopSendsTheWholeBuffer() throws Exception {
+		runGray();
+		long before = model.getData();
+		lcd.LCDDisplay();
+		assertEquals(504, model.getData() - before);
+		assertArrayEquals(lcd.LCDGetFrameBuffer().getBytes(), model.getRam());
+	}
+}
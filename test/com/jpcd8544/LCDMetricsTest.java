@@ -0,0 +1,60 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/*
+	 Name		 : LCDMetricsTest.java
+
+	 Description :
+	     The counters add up whatever threads draw, and reset sets them back.
+*/
+
+public class LCDMetricsTest {
+
+	@Test
+	public void drawCallsFromSeveralThreads() throws InterruptedException {
+		final JPCD8544 lcd = new JPCD8544();
+		lcd.LCDInit(new NullTransport(), null, 0x3c);
+		LCDMetrics metrics = lcd.LCDGetMetrics();
+		metrics.reset();
+
+		Thread threads[] = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int row = t * 8;
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < 10000; i++)
+						lcd.LCDSetPixel(i % 84, row, lcd.BLACK);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		lcd.LCDClear();
+
+		LCDMetricsSnapshot s = metrics.snapshot();
+		assertEquals(40000, s.getDrawCalls(LCDMetrics.SET_PIXEL));
+		assertEquals(1, s.getDrawCalls(LCDMetrics.CLEAR));
+
+		metrics.reset();
+		assertEquals(0, metrics.getDrawCalls()[LCDMetrics.SET_PIXEL]);
+	}
+
+	@Test
+	public void redundantFlushes() {
+		JPCD8544 lcd = new JPCD8544();
+		lcd.LCDInit(new NullTransport(), null, 0x3c);
+		lcd.LCDDisplay();
+		LCDMetrics metrics = lcd.LCDGetMetrics();
+		metrics.reset();
+
+		lcd.LCDSetPixel(1, 1, lcd.BLACK);
+		lcd.LCDDisplay();
+		lcd.LCDDisplay();
+		assertEquals(2, metrics.getFlushes());
+		assertEquals(1, metrics.getRedundantFlushes());
+	}
+}
@@ -0,0 +1,87 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : PCD8544Model.java
+
+	 Description :
+	     What the controller does with the bytes it receives, enough for the
+	     tests: the function set H bit, the X and Y address commands of the
+	     basic instruction set, and the display RAM written in horizontal
+	     addressing mode (the address moves to the next column, then to the
+	     next page). A test transport that feeds it can check that the LCD
+	     ends up holding the frame buffer.
+*/
+
+public class PCD8544Model implements LCDTransport {
+
+	public static final int WIDTH = 84;
+	public static final int PAGES = 6;
+
+	private final byte ram[] = new byte[WIDTH * PAGES];
+	private int x, y;
+	private boolean extended;
+	private long commands;
+	private long data;
+
+	public byte[] getRam() {
+		return ram;
+	}
+
+	public long getCommands() {
+		return commands;
+	}
+
+	public long getData() {
+		return data;
+	}
+
+	/**
+	 * Applies a value decoded by GpioEdgeDecoder
+	 *
+	 * @param value	a command, or a data byte with GpioEdgeDecoder.DATA set
+	 */
+	public void receive(int value) {
+		if ((value & GpioEdgeDecoder.DATA) != 0)
+			data(value & 0xFF);
+		else
+			command(value);
+	}
+
+	public void begin() {
+	}
+
+	public void command(int c) {
+		commands++;
+		if ((c & 0xF8) == 0x20) {
+			extended = (c & 1) != 0;
+		} else if (!extended && (c & 0x80) != 0) {
+			x = (c & 0x7F) % WIDTH;
+		} else if (!extended && (c & 0xF8) == 0x40) {
+			y = (c & 7) % PAGES;
+		}
+	}
+
+	public void data(int c) {
+		data++;
+		ram[y * WIDTH + x] = (byte) c;
+		if (++x == WIDTH) {
+			x = 0;
+			y = (y + 1) % PAGES;
+		}
+	}
+
+	public void data(byte[] buf, int off, int len) {
+		for (int i = off; i < off + len; i++)
+			data(buf[i] & 0xFF);
+	}
+
+	public int getRestartCost() {
+		return 1;
+	}
+
+	public void end() {
+	}
+
+	public void close() {
+	}
+}
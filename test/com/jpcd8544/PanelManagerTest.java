@@ -0,0 +1,137 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/*
+	 Name		 : PanelManagerTest.java
+
+	 Description :
+	     Two panels on a bus that, like SpiDevTransport, holds the bytes until
+	     the session ends. Every byte must go out while the CS of its panel,
+	     and only that one, is low.
+*/
+
+public class PanelManagerTest {
+
+	private boolean csLow[] = new boolean[2];
+	private PCD8544Model models[] = { new PCD8544Model(), new PCD8544Model() };
+	private int misrouted;
+	private PanelManager manager;
+
+	// a value per byte: the command, or the data byte with GpioEdgeDecoder.DATA set
+	private class BufferingBus implements LCDTransport {
+
+		private final List<Integer> pending = new ArrayList<Integer>();
+		private boolean session;
+
+		public void begin() {
+			session = true;
+		}
+
+		public void command(int c) {
+			put(c);
+		}
+
+		public void data(int c) {
+			put(c | GpioEdgeDecoder.DATA);
+		}
+
+		public void data(byte[] buf, int off, int len) {
+			for (int i = off; i < off + len; i++)
+				put((buf[i] & 0xFF) | GpioEdgeDecoder.DATA);
+		}
+
+		public int getRestartCost() {
+			return 32;
+		}
+
+		public void end() {
+			flush();
+			session = false;
+		}
+
+		public void close() {
+		}
+
+		private void put(int value) {
+			pending.add(Integer.valueOf(value));
+			if (!session)
+				flush();
+		}
+
+		private void flush() {
+			int selected = -1;
+			for (int i = 0; i < csLow.length; i++) {
+				if (csLow[i])
+					selected = selected == -1 ? i : -2;
+			}
+			for (Integer v : pending) {
+				if (selected < 0)
+					misrouted++;
+				else
+					models[selected].receive(v.intValue());
+			}
+			pending.clear();
+		}
+	}
+
+	private GpioPinDigitalOutput csPin(final int panel) {
+		return (GpioPinDigitalOutput) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { GpioPinDigitalOutput.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method m, Object[] args) {
+						if (m.getName().equals("low"))
+							csLow[panel] = true;
+						else if (m.getName().equals("high"))
+							csLow[panel] = false;
+						return null;
+					}
+				});
+	}
+
+	@Before
+	public void setUp() {
+		manager = new PanelManager(new BufferingBus(), null);
+		manager.addPanel(csPin(0), 0x3c);
+		manager.addPanel(csPin(1), 0x3c);
+	}
+
+	@Test
+	public void eachPanelGetsItsOwnFrame() {
+		manager.getPanel(0).LCDClear();
+		manager.getPanel(0).LCDFillRect(0, 0, 20, 20, manager.getPanel(0).BLACK);
+		manager.getPanel(1).LCDClear();
+		manager.getPanel(1).LCDDrawLine(0, 47, 83, 0, manager.getPanel(1).BLACK);
+		assertEquals(2, manager.flush());
+
+		assertEquals(0, misrouted);
+		for (int i = 0; i < 2; i++)
+			assertArrayEquals(manager.getPanel(i).LCDGetFrameBuffer().getBytes(), models[i].getRam());
+	}
+
+	@Test
+	public void flushTakesTurns() {
+		manager.flush();
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 2; i++)
+				manager.getPanel(i).LCDSetPixel(round, 0, manager.getPanel(i).BLACK);
+			assertEquals(1, manager.flush(1));
+			assertEquals(1, manager.flush(1));
+			assertEquals(0, manager.flush(1));
+		}
+		assertEquals(0, misrouted);
+		for (int i = 0; i < 2; i++)
+			assertArrayEquals(manager.getPanel(i).LCDGetFrameBuffer().getBytes(), models[i].getRam());
+	}
+}
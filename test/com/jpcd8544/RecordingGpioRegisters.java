@@ -0,0 +1,61 @@
+package com.jpcd8544;
+
+/*
+	 Name		 : RecordingGpioRegisters.java
+
+	 Description :
+	     Passes the register writes through to other registers (e.g. a mapped
+	     stand-in file) and keeps a log of them. The log can then be turned back
+	     into the bytes the LCD would have received with GpioEdgeDecoder.
+*/
+
+public class RecordingGpioRegisters implements GpioRegisters {
+
+	private final GpioRegisters registers;
+
+	// offset, value pairs
+	private int log[] = new int[1024];
+	private int size;
+
+	public RecordingGpioRegisters(GpioRegisters registers) {
+		this.registers = registers;
+	}
+
+	public int read(int offset) {
+		return registers.read(offset);
+	}
+
+	public synchronized void write(int offset, int value) {
+		registers.write(offset, value);
+		if (size + 2 > log.length) {
+			int bigger[] = new int[log.length * 2];
+			System.arraycopy(log, 0, bigger, 0, size);
+			log = bigger;
+		}
+		log[size++] = offset;
+		log[size++] = value;
+	}
+
+	/**
+	 * How many writes were recorded
+	 */
+	public synchronized int getWriteCount() {
+		return size / 2;
+	}
+
+	public synchronized int getOffset(int write) {
+		return log[write * 2];
+	}
+
+	public synchronized int getValue(int write) {
+		return log[write * 2 + 1];
+	}
+
+	public synchronized void reset() {
+		size = 0;
+	}
+
+	public void close() {
+		registers.close();
+	}
+}
@@ -0,0 +1,61 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+	 Name		 : RingFileTest.java
+
+	 Description :
+	     Frames written to a RingFileSink come back out of a RingFileReader
+	     mapping the same file, the latest one first, each only once.
+*/
+
+public class RingFileTest {
+
+	private File file;
+	private RingFileSink sink;
+	private RingFileReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("lcd", ".ring");
+		sink = new RingFileSink(file.getPath(), 84, 48, 4);
+		reader = new RingFileReader(file.getPath());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		reader.close();
+		sink.close();
+		file.delete();
+	}
+
+	@Test
+	public void readerGetsTheLatestFrame() throws IOException {
+		byte frame[] = new byte[504];
+		byte read[] = new byte[504];
+		Random r = new Random(3);
+
+		assertEquals(0, reader.poll(read));
+		for (long seq = 1; seq <= 10; seq++) {
+			r.nextBytes(frame);
+			sink.write(frame, 84, 48, seq);
+			if (seq % 3 == 0) {
+				assertEquals(seq, reader.poll(read));
+				assertArrayEquals(frame, read);
+				assertEquals(0, reader.poll(read));
+			}
+		}
+		assertEquals(10, reader.poll(read));
+		assertArrayEquals(frame, read);
+	}
+}
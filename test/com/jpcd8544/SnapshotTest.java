@@ -0,0 +1,53 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/*
+	 Name		 : SnapshotTest.java
+
+	 Description :
+	     A flush running next to a drawing thread only sends completed
+	     primitives: a rectangle over every page is on the LCD whole, in one
+	     color, never half drawn.
+*/
+
+public class SnapshotTest {
+
+	private volatile boolean stop;
+
+	@Test(timeout = 20000)
+	public void framesOnlyHoldCompletedPrimitives() throws Exception {
+		final JPCD8544 lcd = new JPCD8544();
+		PCD8544Model model = new PCD8544Model();
+		lcd.LCDInit(model, null, 0x3c);
+		lcd.LCDClear();
+
+		Thread painter = new Thread(new Runnable() {
+			public void run() {
+				for (int i = 0; !stop; i++)
+					lcd.LCDFillRect(10, 0, 20, 48, i & 1);
+			}
+		});
+		painter.start();
+
+		int torn = 0;
+		try {
+			for (int f = 0; f < 20000; f++) {
+				lcd.LCDDisplay();
+				byte ram[] = model.getRam();
+				for (int p = 0; p < PCD8544Model.PAGES; p++) {
+					for (int x = 10; x < 30; x++) {
+						if (ram[p * PCD8544Model.WIDTH + x] != ram[10])
+							torn++;
+					}
+				}
+			}
+		} finally {
+			stop = true;
+			painter.join();
+		}
+		assertEquals(0, torn);
+	}
+}
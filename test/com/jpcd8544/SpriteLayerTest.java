@@ -0,0 +1,90 @@
+package com.jpcd8544;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+	 Name		 : SpriteLayerTest.java
+
+	 Description :
+	     Sprites drawn over a background and taken off again must leave the
+	     background exactly as it was, whatever they did in between.
+*/
+
+public class SpriteLayerTest {
+
+	private JPCD8544 lcd;
+	private SpriteLayer layer;
+	private byte background[];
+
+	@Before
+	public void setUp() {
+		lcd = new JPCD8544();
+		lcd.LCDInit(new NullTransport(), null, 0x3c);
+		byte b[] = lcd.LCDGetFrameBuffer().getBytes();
+		new Random(7).nextBytes(b);
+		background = b.clone();
+		layer = new SpriteLayer(lcd);
+	}
+
+	private static Sprite box(int w, int h) {
+		byte bitmap[] = new byte[w * ((h + 7) / 8)];
+		for (int i = 0; i < bitmap.length; i++)
+			bitmap[i] = (byte) (i % 3 == 0 ? 0x5A : 0x00);
+		return new Sprite(bitmap, null, w, h);
+	}
+
+	private byte[] screen() {
+		return lcd.LCDGetFrameBuffer().getBytes();
+	}
+
+	@Test
+	public void saveUnderRestoresTheBackground() {
+		SpriteHandle h = layer.add(box(16, 16), 10, 5, SpriteHandle.SAVE_UNDER);
+		layer.update();
+		assertFalse(Arrays.equals(background, screen()));
+		for (int i = 0; i < 20; i++) {
+			h.moveBy(3, (i & 1) == 0 ? 5 : -3);
+			layer.update();
+		}
+		layer.remove(h);
+		assertArrayEquals(background, screen());
+	}
+
+	@Test
+	public void biggerFrameKeepsTheSavedBackground() {
+		// a black background shows the zeros of a lost save
+		Arrays.fill(screen(), (byte) 0xFF);
+		background = screen().clone();
+
+		SpriteHandle h = layer.add(box(8, 8), 20, 11, SpriteHandle.SAVE_UNDER);
+		layer.update();
+		h.setSprite(box(24, 20));
+		layer.update();
+		h.setSprite(box(8, 8));
+		layer.update();
+		layer.remove(h);
+		assertArrayEquals(background, screen());
+	}
+
+	@Test
+	public void xorAndOverlapsUndoInOrder() {
+		SpriteHandle a = layer.add(box(16, 16), -4, -3, SpriteHandle.SAVE_UNDER);
+		SpriteHandle b = layer.add(box(12, 9), 2, 2, SpriteHandle.XOR);
+		SpriteHandle c = layer.add(box(20, 12), 70, 40, SpriteHandle.SAVE_UNDER);
+		for (int i = 0; i < 30; i++) {
+			a.moveBy(2, 1);
+			b.moveBy(1, 1);
+			c.moveBy(-2, -1);
+			layer.update();
+		}
+		layer.erase();
+		assertArrayEquals(background, screen());
+	}
+}